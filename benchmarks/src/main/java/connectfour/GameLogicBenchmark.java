@@ -0,0 +1,133 @@
+package connectfour;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the game logic the user interface calls on every move.
+ *
+ * @author elliot gorman
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class GameLogicBenchmark {
+    /**
+     * The number of moves on the board.
+     */
+    @Param({"0", "14", "28", "40"})
+    private int fill;
+
+    /**
+     * The board, as an array.
+     */
+    private int[][] array;
+
+    /**
+     * The board, as a bitboard.
+     */
+    private BitBoard board;
+
+    /**
+     * A game to load boards into.
+     */
+    private GameEngine engine;
+
+    /**
+     * A column that can still be played.
+     */
+    private int column;
+
+    /**
+     * The cells of a winning line (reused, so allocation isn't measured).
+     */
+    private final int[] cells = new int[4];
+
+    /**
+     * Fills the board and loads it into the user interface's game.
+     */
+    @Setup
+    public void setUp() {
+        board = Positions.random(fill);
+        array = board.toArray();
+        engine = new GameEngine();
+        GameData.getGame().load(array);
+        column = 0;
+        while (!board.canPlay(column)) column++;
+    }
+
+    /**
+     * The full winner check: four in a row anywhere on the board, for either player.
+     * ({@link GameData#isWinner()} only returns the winner worked out as each move is played,
+     * see {@link #playAndCheck()}.)
+     *
+     * @return {@code true} if either player has four in a row
+     */
+    @Benchmark
+    public boolean hasFour() {
+        return board.hasFour(1) | board.hasFour(2);
+    }
+
+    /**
+     * Finding the cells of a winning line anywhere on the board, for either player.
+     *
+     * @return {@code true} if either player has four in a row
+     */
+    @Benchmark
+    public boolean winningLine() {
+        return board.winningLine(1, cells) | board.winningLine(2, cells);
+    }
+
+    /**
+     * Finding the next space in every column (done on every hover and click).
+     *
+     * @return the sum of the spaces
+     */
+    @Benchmark
+    public int nextAvailableSpace() {
+        int sum = 0;
+        for (int col = 0; col < GameData.COLUMNS; col++) {
+            sum += GameData.nextAvailableSpace(col);
+        }
+        return sum;
+    }
+
+    /**
+     * Loading a board, which works out the next player and scans for a winner.
+     *
+     * @return the next player
+     */
+    @Benchmark
+    public int nextPlayer() {
+        engine.load(array);
+        return engine.getPlayer();
+    }
+
+    /**
+     * Playing a move and checking the lines through it for a win (the check done after every click),
+     * then taking it back.
+     *
+     * @return {@code true} if the move won
+     */
+    @Benchmark
+    public boolean playAndCheck() {
+        int player = board.getMoves() % 2 + 1;
+        board.play(column, player);
+        boolean won = board.winningLineThrough(board.getLastMove(), player, cells);
+        board.undo(column);
+        return won;
+    }
+}
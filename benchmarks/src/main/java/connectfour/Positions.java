@@ -0,0 +1,55 @@
+package connectfour;
+
+import java.util.Random;
+
+/**
+ * Builds the boards the benchmarks run on, filled to a given number of moves.
+ *
+ * @author elliot gorman
+ */
+final class Positions {
+    /**
+     * Hides the default public constructor.
+     */
+    private Positions() {
+        throw new IllegalStateException("Utility Class");
+    }
+
+    /**
+     * Plays random moves that don't end the game, the same moves every time.
+     *
+     * @param moves the number of moves to play
+     * @return the board
+     */
+    static BitBoard random(int moves) {
+        //a fixed seed, so every run measures the same boards
+        Random random = new Random(moves);
+        while (true) {
+            BitBoard board = new BitBoard();
+            while (board.getMoves() < moves && play(board, random)) {
+                //keep playing
+            }
+            if (board.getMoves() == moves) return board;
+        }
+    }
+
+    /**
+     * Plays a random move that doesn't win the game.
+     *
+     * @param board  the board
+     * @param random the random number generator
+     * @return {@code false} if every move would end the game
+     */
+    private static boolean play(BitBoard board, Random random) {
+        int player = board.getMoves() % 2 + 1;
+        int start = random.nextInt(GameData.COLUMNS);
+        for (int i = 0; i < GameData.COLUMNS; i++) {
+            int col = (start + i) % GameData.COLUMNS;
+            if (board.canPlay(col) && !board.isWinningMove(col, player)) {
+                board.play(col, player);
+                return true;
+            }
+        }
+        return false;
+    }
+}
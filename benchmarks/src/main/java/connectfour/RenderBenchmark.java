@@ -0,0 +1,81 @@
+package connectfour;
+
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures refreshing and painting the board off screen, as done after every move.
+ *
+ * @author elliot gorman
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class RenderBenchmark {
+    /**
+     * The width of the board, the size it is in the default window.
+     */
+    private static final int WIDTH = 637;
+
+    /**
+     * The height of the board, the size it is in the default window.
+     */
+    private static final int HEIGHT = 540;
+
+    /**
+     * The number of moves on the board.
+     */
+    @Param({"0", "14", "28", "40"})
+    private int fill;
+
+    /**
+     * The board component.
+     */
+    private GridPane pane;
+
+    /**
+     * The off screen image painted to.
+     */
+    private BufferedImage image;
+
+    /**
+     * Fills the board and lays out the board component.
+     */
+    @Setup
+    public void setUp() {
+        GameData.getGame().load(Positions.random(fill).toArray());
+        pane = new GridPane();
+        pane.setSize(WIDTH, HEIGHT);
+        pane.doLayout();
+        image = new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_INT_ARGB);
+    }
+
+    /**
+     * Refreshes the board then paints it.
+     *
+     * @return the image
+     */
+    @Benchmark
+    public BufferedImage refreshAndPaint() {
+        GridPane.refresh();
+        Graphics2D graphics = image.createGraphics();
+        pane.paint(graphics);
+        graphics.dispose();
+        return image;
+    }
+}
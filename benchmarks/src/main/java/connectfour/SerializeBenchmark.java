@@ -0,0 +1,103 @@
+package connectfour;
+
+import java.awt.Color;
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures saving a game and loading it back, in the old serialized format and the binary save format.
+ *
+ * @author elliot gorman
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class SerializeBenchmark {
+    /**
+     * The number of moves on the board.
+     */
+    @Param({"0", "14", "28", "40"})
+    private int fill;
+
+    /**
+     * The board, as saved.
+     */
+    private int[][] board;
+
+    /**
+     * The game, in the binary save format.
+     */
+    private GameSave save;
+
+    /**
+     * The save file.
+     */
+    private File file;
+
+    /**
+     * The binary save file.
+     */
+    private File binaryFile;
+
+    /**
+     * Fills the board and creates the save files.
+     *
+     * @throws IOException if the files can't be created
+     */
+    @Setup
+    public void setUp() throws IOException {
+        board = Positions.random(fill).toArray();
+        GameEngine game = new GameEngine();
+        game.load(board);
+        save = new GameSave(game.getHistory(), game.getPlayer(), Color.RED, Color.YELLOW);
+        file = File.createTempFile("connectfour", ".connect4");
+        binaryFile = File.createTempFile("connectfour", ".c4");
+    }
+
+    /**
+     * Deletes the save files.
+     */
+    @TearDown
+    public void tearDown() {
+        file.delete();
+        binaryFile.delete();
+    }
+
+    /**
+     * Saves the board then loads it back.
+     *
+     * @return the loaded board
+     */
+    @Benchmark
+    public Object roundTrip() {
+        SerializeSystem.serialize(board, file.getPath());
+        return SerializeSystem.load(file.getPath(), 3);
+    }
+
+    /**
+     * Saves the game in the binary save format then loads it back.
+     *
+     * @return the loaded game
+     */
+    @Benchmark
+    public Object binaryRoundTrip() {
+        save.write(binaryFile.getPath());
+        return GameSave.read(binaryFile.getPath());
+    }
+}
@@ -0,0 +1,539 @@
+package connectfour;
+
+import java.util.Random;
+
+/**
+ * A bitboard representation of the game board.
+ * Each player's pieces are stored in a single long, one bit per cell, laid out
+ * column by column from the bottom up with one spare (always empty) bit on top of
+ * each column so that shifted lines never wrap into the next column.
+ * <p>
+ * The board also keeps a Zobrist key of its position (a random number for every player's
+ * piece on every cell, xor'ed together) and the key of its mirror image, both updated as each
+ * piece is played or taken back. A position and its mirror image play out the same way, so the
+ * smaller of the two keys identifies both of them (see {@link #getCanonicalKey()}).
+ *
+ * @author elliot gorman
+ */
+final class BitBoard {
+    /**
+     * The number of bits used by each column (the rows plus the empty sentinel bit).
+     */
+    static final int COLUMN_BITS = GameData.ROWS + 1;
+
+    /**
+     * The number of cells on the board.
+     */
+    static final int CELLS = GameData.ROWS * GameData.COLUMNS;
+
+    /**
+     * The bit shifts for each line direction: vertical, horizontal and both diagonals.
+     */
+    static final int[] DIRECTIONS = {1, COLUMN_BITS, COLUMN_BITS - 1, COLUMN_BITS + 1};
+
+    /**
+     * The bottom cell of every column.
+     */
+    static final long BOTTOM_MASK = bottomMask();
+
+    /**
+     * Every playable cell (excluding the sentinel bits).
+     */
+    static final long BOARD_MASK = BOTTOM_MASK * ((1L << GameData.ROWS) - 1);
+
+    /**
+     * The seed of the Zobrist numbers, which must never change as keys are saved in the opening book.
+     */
+    private static final long ZOBRIST_SEED = 0x43344B45594CL;
+
+    /**
+     * The Zobrist number of each player's piece (index 0 for player one, 1 for player two) on each cell.
+     */
+    private static final long[][] ZOBRIST = new long[2][COLUMN_BITS * GameData.COLUMNS];
+
+    /**
+     * The Zobrist number of each player's piece on the mirror image of each cell.
+     */
+    private static final long[][] MIRRORED_ZOBRIST = new long[2][COLUMN_BITS * GameData.COLUMNS];
+
+    /**
+     * The Zobrist number xor'ed into keys with player two to move.
+     */
+    static final long SIDE_TO_MOVE;
+
+    static {
+        Random random = new Random(ZOBRIST_SEED);
+        for (int p = 0; p < 2; p++) {
+            for (int bit = 0; bit < ZOBRIST[p].length; bit++) {
+                ZOBRIST[p][bit] = random.nextLong();
+            }
+        }
+        for (int p = 0; p < 2; p++) {
+            for (int bit = 0; bit < ZOBRIST[p].length; bit++) {
+                MIRRORED_ZOBRIST[p][bit] = ZOBRIST[p][mirrorColumn(column(bit)) * COLUMN_BITS + bit % COLUMN_BITS];
+            }
+        }
+        SIDE_TO_MOVE = random.nextLong();
+    }
+
+    /**
+     * The pieces of each player (index 0 for player one, 1 for player two).
+     */
+    private final long[] pieces = new long[2];
+
+    /**
+     * Every occupied cell on the board.
+     */
+    private long mask;
+
+    /**
+     * The number of pieces in each column.
+     */
+    private final int[] heights = new int[GameData.COLUMNS];
+
+    /**
+     * The number of moves played.
+     */
+    private int moves;
+
+    /**
+     * The bit index of the last piece played, or -1 if unknown (empty or loaded boards).
+     */
+    private int lastMove = -1;
+
+    /**
+     * The Zobrist key of the position.
+     */
+    private long key;
+
+    /**
+     * The Zobrist key of the mirror image of the position.
+     */
+    private long mirroredKey;
+
+    /**
+     * Instantiates a new, empty BitBoard.
+     */
+    BitBoard() {
+    }
+
+    /**
+     * Instantiates a copy of another BitBoard.
+     *
+     * @param other the board to copy
+     */
+    BitBoard(BitBoard other) {
+        copyFrom(other);
+    }
+
+    /**
+     * Makes this board a copy of another, without allocating.
+     *
+     * @param other the board to copy
+     */
+    void copyFrom(BitBoard other) {
+        pieces[0] = other.pieces[0];
+        pieces[1] = other.pieces[1];
+        mask = other.mask;
+        moves = other.moves;
+        lastMove = other.lastMove;
+        key = other.key;
+        mirroredKey = other.mirroredKey;
+        System.arraycopy(other.heights, 0, heights, 0, GameData.COLUMNS);
+    }
+
+    /**
+     * Builds the mask of the bottom cell of every column.
+     *
+     * @return the bottom mask
+     */
+    private static long bottomMask() {
+        long m = 0;
+        for (int i = 0; i < GameData.COLUMNS; i++) {
+            m |= 1L << (i * COLUMN_BITS);
+        }
+        return m;
+    }
+
+    /**
+     * Checks if a piece can still be dropped in a column.
+     *
+     * @param col the column
+     * @return {@code true} if the column isn't full
+     */
+    boolean canPlay(int col) {
+        return heights[col] < GameData.ROWS;
+    }
+
+    /**
+     * Drops a piece for the given player in a column.
+     *
+     * @param col    the column
+     * @param player the player (either 1 or 2)
+     * @return the row (counted from the top, like the board array) the piece landed in
+     */
+    int play(int col, int player) {
+        lastMove = col * COLUMN_BITS + heights[col];
+        long bit = 1L << lastMove;
+        pieces[player - 1] |= bit;
+        mask |= bit;
+        moves++;
+        key ^= ZOBRIST[player - 1][lastMove];
+        mirroredKey ^= MIRRORED_ZOBRIST[player - 1][lastMove];
+        return GameData.ROWS - ++heights[col];
+    }
+
+    /**
+     * Takes back the top piece of a column.
+     * The last move is forgotten, so this is meant for searches that play and undo moves.
+     *
+     * @param col the column
+     */
+    void undo(int col) {
+        int index = col * COLUMN_BITS + --heights[col];
+        long bit = 1L << index;
+        int p = (pieces[0] & bit) != 0 ? 0 : 1;
+        key ^= ZOBRIST[p][index];
+        mirroredKey ^= MIRRORED_ZOBRIST[p][index];
+        pieces[0] &= ~bit;
+        pieces[1] &= ~bit;
+        mask &= ~bit;
+        moves--;
+        lastMove = -1;
+    }
+
+    /**
+     * Checks if dropping a piece in a column would win the game for a player.
+     *
+     * @param col    the column (which must not be full)
+     * @param player the player (either 1 or 2)
+     * @return {@code true} if the move makes four in a row
+     */
+    boolean isWinningMove(int col, int player) {
+        return hasFour(pieces[player - 1] | (1L << (col * COLUMN_BITS + heights[col])));
+    }
+
+    /**
+     * Gets the next available space in a column.
+     *
+     * @param col the column
+     * @return the row (counted from the top) of the next available space, or -1 if full
+     */
+    int nextAvailableSpace(int col) {
+        return GameData.ROWS - 1 - heights[col];
+    }
+
+    /**
+     * Finds the player on the board at a given x and y.
+     *
+     * @param y the row (counted from the top)
+     * @param x the column
+     * @return the player (if any) in that position
+     */
+    int get(int y, int x) {
+        long bit = 1L << bitIndex(y, x);
+        if ((pieces[0] & bit) != 0) return 1;
+        return (pieces[1] & bit) != 0 ? 2 : 0;
+    }
+
+    /**
+     * Getter for a player's pieces.
+     *
+     * @param player the player (either 1 or 2)
+     * @return the bitboard of that player's pieces
+     */
+    long getPieces(int player) {
+        return pieces[player - 1];
+    }
+
+    /**
+     * Getter for every occupied cell.
+     *
+     * @return the bitboard of all pieces
+     */
+    long getMask() {
+        return mask;
+    }
+
+    /**
+     * Getter for the number of moves played.
+     *
+     * @return the move count
+     */
+    int getMoves() {
+        return moves;
+    }
+
+    /**
+     * Getter for the last piece played.
+     *
+     * @return the bit index of the last piece, or -1 if unknown
+     */
+    int getLastMove() {
+        return lastMove;
+    }
+
+    /**
+     * Getter for the Zobrist key of the position.
+     *
+     * @return the key
+     */
+    long getKey() {
+        return key;
+    }
+
+    /**
+     * Getter for the Zobrist key of the mirror image of the position.
+     *
+     * @return the mirrored key
+     */
+    long getMirroredKey() {
+        return mirroredKey;
+    }
+
+    /**
+     * Gets the key shared by the position and its mirror image (the smaller of their keys).
+     *
+     * @return the canonical key
+     */
+    long getCanonicalKey() {
+        return Math.min(key, mirroredKey);
+    }
+
+    /**
+     * Checks if the canonical key is the mirror image's, so columns stored under it
+     * must be mirrored (see {@link #mirrorColumn(int)}) to fit this position.
+     *
+     * @return {@code true} if the canonical position is the mirror image
+     */
+    boolean isMirrored() {
+        return mirroredKey < key;
+    }
+
+    /**
+     * Counts the pieces of a player.
+     *
+     * @param player the player (either 1 or 2)
+     * @return the number of pieces that player has on the board
+     */
+    int count(int player) {
+        return Long.bitCount(pieces[player - 1]);
+    }
+
+    /**
+     * Checks if every cell has been filled.
+     *
+     * @return {@code true} if the board is full
+     */
+    boolean isFull() {
+        return moves == CELLS;
+    }
+
+    /**
+     * Checks if a player has four in a row anywhere on the board.
+     *
+     * @param player the player (either 1 or 2)
+     * @return {@code true} if the player has won
+     */
+    boolean hasFour(int player) {
+        return hasFour(pieces[player - 1]);
+    }
+
+    /**
+     * Checks a bitboard for four in a row using shifts and masks.
+     *
+     * @param p the bitboard
+     * @return {@code true} if four in a row is present
+     */
+    static boolean hasFour(long p) {
+        for (int i = 0; i < DIRECTIONS.length; i++) {
+            if (fourMask(p, DIRECTIONS[i]) != 0) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Finds the first cell of every four in a row along a direction.
+     *
+     * @param p     the bitboard
+     * @param shift the direction
+     * @return a bitboard with the starting cell of each line set
+     */
+    private static long fourMask(long p, int shift) {
+        long m = p & (p >>> shift);
+        return m & (m >>> (2 * shift));
+    }
+
+    /**
+     * Finds every empty cell that would complete four in a row.
+     *
+     * @param p    the bitboard of one player's pieces
+     * @param mask every occupied cell
+     * @return a bitboard of the empty cells that would win for that player
+     */
+    static long winningCells(long p, long mask) {
+        //vertical
+        long r = (p << 1) & (p << 2) & (p << 3);
+        //horizontal and both diagonals, with the gap at any of the four places
+        for (int i = 1; i < DIRECTIONS.length; i++) {
+            int s = DIRECTIONS[i];
+            long t = (p << s) & (p << (2 * s));
+            r |= t & (p << (3 * s));
+            r |= t & (p >>> s);
+            t = (p >>> s) & (p >>> (2 * s));
+            r |= t & (p << s);
+            r |= t & (p >>> (3 * s));
+        }
+        return r & (BOARD_MASK ^ mask);
+    }
+
+    /**
+     * Finds a winning line for a player.
+     *
+     * @param player the player (either 1 or 2)
+     * @param cells  filled with the bit index of the four winning cells
+     * @return {@code true} if a line was found
+     */
+    boolean winningLine(int player, int[] cells) {
+        for (int i = 0; i < DIRECTIONS.length; i++) {
+            long m = fourMask(pieces[player - 1], DIRECTIONS[i]);
+            if (m != 0) {
+                int start = Long.numberOfTrailingZeros(m);
+                for (int j = 0; j < 4; j++) {
+                    cells[j] = start + j * DIRECTIONS[i];
+                }
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Finds a winning line running through a single cell.
+     * Only the four lines through that cell are walked, so this is the cheap check
+     * to use right after a piece has been played.
+     *
+     * @param bit    the bit index of the cell
+     * @param player the player (either 1 or 2)
+     * @param cells  filled with the bit index of the four winning cells
+     * @return {@code true} if a line was found
+     */
+    boolean winningLineThrough(int bit, int player, int[] cells) {
+        long p = pieces[player - 1];
+        for (int i = 0; i < DIRECTIONS.length; i++) {
+            int shift = DIRECTIONS[i];
+            //walk back to the start of the run
+            int start = bit;
+            while (start - shift >= 0 && (p & (1L << (start - shift))) != 0) {
+                start -= shift;
+            }
+            //walk forward to the end of the run
+            int end = bit;
+            while (end + shift < COLUMN_BITS * GameData.COLUMNS && (p & (1L << (end + shift))) != 0) {
+                end += shift;
+            }
+            if ((end - start) / shift >= 3) {
+                for (int j = 0; j < 4; j++) {
+                    cells[j] = start + j * shift;
+                }
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Empties the board.
+     */
+    void clear() {
+        pieces[0] = 0;
+        pieces[1] = 0;
+        mask = 0;
+        moves = 0;
+        lastMove = -1;
+        key = 0;
+        mirroredKey = 0;
+        for (int i = 0; i < GameData.COLUMNS; i++) {
+            heights[i] = 0;
+        }
+    }
+
+    /**
+     * Replaces the board with the contents of a board array.
+     *
+     * @param board the board array (rows counted from the top)
+     */
+    void load(int[][] board) {
+        clear();
+        for (int x = 0; x < GameData.COLUMNS; x++) {
+            for (int y = GameData.ROWS - 1; y >= 0; y--) {
+                if (board[y][x] == 1 || board[y][x] == 2) {
+                    int index = bitIndex(y, x);
+                    long bit = 1L << index;
+                    pieces[board[y][x] - 1] |= bit;
+                    mask |= bit;
+                    key ^= ZOBRIST[board[y][x] - 1][index];
+                    mirroredKey ^= MIRRORED_ZOBRIST[board[y][x] - 1][index];
+                    moves++;
+                    heights[x] = GameData.ROWS - y;
+                }
+            }
+        }
+    }
+
+    /**
+     * Creates an array view of the board.
+     *
+     * @return a new board array (rows counted from the top)
+     */
+    int[][] toArray() {
+        int[][] board = new int[GameData.ROWS][GameData.COLUMNS];
+        for (int y = 0; y < GameData.ROWS; y++) {
+            for (int x = 0; x < GameData.COLUMNS; x++) {
+                board[y][x] = get(y, x);
+            }
+        }
+        return board;
+    }
+
+    /**
+     * Converts a board position to its bit index.
+     *
+     * @param y the row (counted from the top)
+     * @param x the column
+     * @return the bit index
+     */
+    static int bitIndex(int y, int x) {
+        return x * COLUMN_BITS + (GameData.ROWS - 1 - y);
+    }
+
+    /**
+     * Gets the column of a bit index.
+     *
+     * @param bit the bit index
+     * @return the column
+     */
+    static int column(int bit) {
+        return bit / COLUMN_BITS;
+    }
+
+    /**
+     * Gets the column on the other side of the board.
+     *
+     * @param col the column
+     * @return the column in the mirror image
+     */
+    static int mirrorColumn(int col) {
+        return GameData.COLUMNS - 1 - col;
+    }
+
+    /**
+     * Gets the row (counted from the top) of a bit index.
+     *
+     * @param bit the bit index
+     * @return the row
+     */
+    static int row(int bit) {
+        return GameData.ROWS - 1 - bit % COLUMN_BITS;
+    }
+}
@@ -1,29 +1,36 @@
 package connectfour;
 
 import java.awt.Color;
-import java.awt.Dimension;
-import java.awt.Graphics;
 import java.awt.Graphics2D;
+import java.awt.GraphicsConfiguration;
 import java.awt.RenderingHints;
-import javax.swing.JPanel;
-import javax.swing.border.Border;
-import javax.swing.border.LineBorder;
+import java.awt.Transparency;
+import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
+import java.util.HashMap;
+import java.util.Map;
 
 /**
- * The panels which the circles are drawn on (when clicked).
+ * The circles drawn in each cell of the grid, and the settings for highlighting them.
+ * The cells are no longer panels of their own: the {@link GridPane} paints every cell itself.
+ * <p>
+ * Each circle (by color, hovering or not, and size in screen pixels) is drawn with antialiasing
+ * once, into an image made for the screen, and then copied into each cell it is painted in.
+ * The images are thrown away when a player's color changes, and once the grid has been resized
+ * through enough sizes to fill the cache. They are only used on the Event Dispatch Thread.
  *
  * @author elliot gorman
  */
-class CirclePanel extends JPanel {
+final class CirclePanel {
     /**
-     * The border for a selected column of CirclePanels.
+     * The width of the border for a selected column of cells.
      */
-    static final LineBorder SELECTED_BORDER = new LineBorder(Color.BLACK, 2);
+    static final int SELECTED_BORDER = 2;
 
     /**
-     * The border for a unselected column of CirclePanels (default).
+     * The width of the border for an unselected column of cells (default).
      */
-    static final LineBorder UNSELECTED_BORDER = new LineBorder(Color.BLACK, 1);
+    static final int UNSELECTED_BORDER = 1;
 
     /**
      * The default color for the first player.
@@ -36,53 +43,45 @@ class CirclePanel extends JPanel {
     static final Color DEFAULT_PLAYER_TWO_COLOR = Color.YELLOW;
 
     /**
-     * Flag for disabling the hovering highlights.
+     * The opacity of the hovering (greyed out) circle.
      */
-    private static boolean blockHovers = false;
+    static final int HOVER_ALPHA = 120;
 
     /**
-     * Flag for disabling the column highlights when a user moves their mouse across a column.
+     * The most circle images kept before they are all thrown away.
      */
-    private static boolean blockColumns = true;
+    static final int MAX_SPRITES = 64;
 
     /**
-     * Drawing control flag for drawing greyed out hover highlights.
+     * The circle images, by color, hovering and size (see {@link #spriteKey(Color, boolean, int, int)}).
      */
-    private boolean hover;
+    private static final Map<Long, BufferedImage> sprites = new HashMap<Long, BufferedImage>();
 
     /**
-     * Allows control over the drawing method (when to draw circle).
+     * The screen the circle images were made for.
      */
-    private boolean draw;
+    private static GraphicsConfiguration spriteConfiguration;
 
     /**
-     * Color for the changing player colours.
+     * The number of circle images drawn, since the program started.
      */
-    private Color color;
+    private static long spritesDrawn;
 
     /**
-     * Instantiates a new Circle Panel.
+     * Flag for disabling the hovering highlights.
      */
-    CirclePanel() {
-        //sets the BG and ConnectFour color to white
-        setBackground(Color.WHITE);
-        setOpaque(false);
-        setEnabled(true);
-        setPreferredSize(new Dimension(3, 3));
-        setColor(Color.WHITE);
-        setBorder(UNSELECTED_BORDER);
-    }
+    private static boolean blockHovers = false;
 
     /**
-     * Sets the border, only if the blockColumns flag is false.
-     *
-     * @param border the border to change to
+     * Flag for disabling the column highlights when a user moves their mouse across a column.
      */
-    void setColBorder(Border border) {
-        if (blockColumns) {
-            return;
-        }
-        super.setBorder(border);
+    private static boolean blockColumns = true;
+
+    /**
+     * Hides the default public constructor.
+     */
+    private CirclePanel() {
+        throw new IllegalStateException("Utility Class");
     }
 
     /**
@@ -118,72 +117,97 @@ class CirclePanel extends JPanel {
     }
 
     /**
-     * Setter for painting control.
+     * Paints a circle filling a cell, from its image (drawing the image first if needed).
      *
-     * @param draw either {@code true} or {@code false}
-     */
-    void setDraw(boolean draw) {
-        this.draw = draw;
+     * @param graphics2D the graphics environment
+     * @param color      the color of the circle
+     * @param hover      {@code true} for the more transparent, hovering circle
+     * @param x          the left of the cell
+     * @param y          the top of the cell
+     * @param width      the width of the cell
+     * @param height     the height of the cell
+     */
+    static void paint(Graphics2D graphics2D, Color color, boolean hover, int x, int y, int width, int height) {
+        //the image is the size of the cell on screen (larger than the cell on scaled screens)
+        AffineTransform transform = graphics2D.getTransform();
+        int pixelWidth = (int) Math.ceil(width * Math.abs(transform.getScaleX()));
+        int pixelHeight = (int) Math.ceil(height * Math.abs(transform.getScaleY()));
+        if (pixelWidth <= 0 || pixelHeight <= 0) return;
+
+        GraphicsConfiguration configuration = graphics2D.getDeviceConfiguration();
+        if (configuration != spriteConfiguration) {
+            //moved to another screen
+            sprites.clear();
+            spriteConfiguration = configuration;
+        }
+        Long key = Long.valueOf(spriteKey(color, hover, pixelWidth, pixelHeight));
+        BufferedImage sprite = sprites.get(key);
+        if (sprite == null) {
+            //the old sizes go once the grid has been resized through enough of them
+            if (sprites.size() >= MAX_SPRITES) {
+                sprites.clear();
+            }
+            sprite = drawSprite(configuration, color, hover, pixelWidth, pixelHeight);
+            sprites.put(key, sprite);
+        }
+        graphics2D.drawImage(sprite, x, y, width, height, null);
     }
 
     /**
-     * Setter for the changer color.
+     * Draws the image of a circle.
      *
-     * @param color the value to change to
-     */
-    void setColor(Color color) {
-        this.color = color;
+     * @param configuration the screen the image is for
+     * @param color         the color of the circle
+     * @param hover         {@code true} for the more transparent, hovering circle
+     * @param width         the width of the image, in screen pixels
+     * @param height        the height of the image, in screen pixels
+     * @return the image
+     */
+    private static BufferedImage drawSprite(GraphicsConfiguration configuration, Color color, boolean hover,
+                                            int width, int height) {
+        BufferedImage sprite = configuration.createCompatibleImage(width, height, Transparency.TRANSLUCENT);
+        Graphics2D graphics2D = sprite.createGraphics();
+        //Antialiasing
+        graphics2D.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+        if (hover) {
+            //more transparent color
+            graphics2D.setColor(new Color(color.getRed(), color.getGreen(), color.getBlue(), HOVER_ALPHA));
+        } else {
+            graphics2D.setColor(color);
+        }
+        graphics2D.fillOval(0, 0, width, height);
+        graphics2D.dispose();
+        spritesDrawn++;
+        return sprite;
     }
 
     /**
-     * Enables the hovering circle.
+     * Packs what a circle image looks like into a key.
      *
-     * @param hover the flag
-     */
-    void setHover(boolean hover) {
-        //if blockHovers is set to true, the user doesn't want the highlighting on
-        if (blockHovers) {
-            return;
-        }
-        this.hover = hover;
+     * @param color  the color of the circle
+     * @param hover  {@code true} for the hovering circle
+     * @param width  the width of the image, in screen pixels
+     * @param height the height of the image, in screen pixels
+     * @return the key
+     */
+    private static long spriteKey(Color color, boolean hover, int width, int height) {
+        return (color.getRGB() & 0xFFFFFFFFL) << 31 | (long) (width & 0x7FFF) << 16
+                | (long) (height & 0x7FFF) << 1 | (hover ? 1 : 0);
     }
 
     /**
-     * Getter for the hover flag.
-     *
-     * @return the hover flag
+     * Throws away every circle image (when a player's color changes).
      */
-    boolean isHover() {
-        return hover;
+    static void clearSprites() {
+        sprites.clear();
     }
 
     /**
-     * The painting method, responsible for painting the circles and dots
+     * Getter for the number of circle images drawn, since the program started.
      *
-     * @param graphics the graphics environment
+     * @return the sprite count
      */
-    //@Override
-    public void paintComponent(Graphics graphics) {
-        //refresh
-        super.paintComponent(graphics);
-        Graphics2D graphics2D = (Graphics2D) graphics;
-
-        //Antialiasing
-        graphics2D.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
-        graphics2D.setBackground(null);
-        graphics2D.setColor(Color.WHITE);
-
-        if (hover) {//if the panel is being hovered, draw highlight
-            Color col = GameData.getCurrentPlayerColor();
-            //more transparent color
-            graphics2D.setColor(new Color(col.getRed(), col.getGreen(), col.getBlue(), 120));
-            graphics2D.fillOval(0, 0, getWidth(), getHeight());
-        }
-        if (draw) { //if draw is set to true, then continue, otherwise the panel is cleared
-            //draw circle on panel
-            hover = false;
-            graphics2D.setColor(color);
-            graphics2D.fillOval(0, 0, getWidth(), getHeight());
-        }
+    static long getSpritesDrawn() {
+        return spritesDrawn;
     }
-}
\ No newline at end of file
+}
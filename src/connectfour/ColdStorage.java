@@ -0,0 +1,129 @@
+package connectfour;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+/**
+ * The archival format for storing finished games as compactly as possible ("cold storage").
+ * <p>
+ * Games are gathered into blocks of {@link #GAMES_PER_BLOCK}, and each block is compressed
+ * on its own, so files of any size are written and read a block at a time. Inside a block,
+ * each game is its date (as the difference from the game before it), its result and its
+ * move count as variable-length integers, then its moves packed three bits to a column.
+ * <p>
+ * File layout: the magic number (int) and version (byte), then the blocks. Each block is the
+ * number of games, the uncompressed size and the compressed size (variable-length integers),
+ * then the compressed games.
+ * <p>
+ * Variable-length integers use 7 bits a byte, lowest first, with the top bit set on every byte
+ * but the last. Signed values (the date differences) are zigzag encoded first.
+ *
+ * @author elliot gorman
+ */
+final class ColdStorage {
+    /**
+     * The number identifying a cold storage file ("C4CS").
+     */
+    static final int MAGIC = 0x43344353;
+
+    /**
+     * The current file version.
+     */
+    static final int VERSION = 1;
+
+    /**
+     * The number of games compressed together.
+     */
+    static final int GAMES_PER_BLOCK = 4096;
+
+    /**
+     * The bits used for each move.
+     */
+    static final int MOVE_BITS = 3;
+
+    /**
+     * The size of the largest game in a block, in bytes: the date, result and move count, then the moves.
+     */
+    static final int MAX_GAME_BYTES = 10 + 1 + 1 + (BitBoard.CELLS * MOVE_BITS + 7) / 8;
+
+    /**
+     * Hides the default public constructor.
+     */
+    private ColdStorage() {
+        throw new IllegalStateException("Utility Class");
+    }
+
+    /**
+     * Packs the game archive into a cold storage file, or unpacks one into the archive,
+     * or scans one to time decoding it.
+     * <p>
+     * Usage (from the src folder):
+     * {@code java connectfour.ColdStorage pack|unpack|scan <file>}
+     *
+     * @param args "pack", "unpack" or "scan", then the cold storage file
+     */
+    public static void main(String[] args) {
+        if (args.length < 2 || !(args[0].equals("pack") || args[0].equals("unpack") || args[0].equals("scan"))) {
+            System.err.println("Usage: ColdStorage pack|unpack|scan <file>");
+            return;
+        }
+        long start = System.nanoTime();
+        try {
+            if (args[0].equals("pack")) {
+                GameArchive archive = new GameArchive(GameArchive.DEFAULT_PATH);
+                ColdStorageWriter writer = new ColdStorageWriter(
+                        new BufferedOutputStream(new FileOutputStream(args[1])));
+                try {
+                    GameEngine game = new GameEngine();
+                    for (int id = 1; id <= archive.size(); id++) {
+                        archive.load(id, game);
+                        writer.write(game, archive.getDate(id));
+                    }
+                } finally {
+                    writer.close();
+                    archive.close();
+                }
+                long bytes = new File(args[1]).length();
+                System.out.println("Packed " + writer.getGames() + " games into " + bytes + " bytes ("
+                        + (writer.getGames() == 0 ? 0 : (double) bytes / writer.getGames()) + " bytes a game) in "
+                        + (System.nanoTime() - start) / 1000000 + " ms");
+                return;
+            }
+
+            GameArchive archive = args[0].equals("unpack") ? new GameArchive(GameArchive.DEFAULT_PATH) : null;
+            ColdStorageReader reader = new ColdStorageReader(new BufferedInputStream(new FileInputStream(args[1])));
+            GameEngine game = new GameEngine();
+            long games = 0;
+            long moves = 0;
+            long outOfOrder = 0;
+            try {
+                while (reader.next(game)) {
+                    if (archive != null) {
+                        //the archive can only add games in date order, and dates are never changed
+                        if (reader.getDate() < archive.getLastDate()) {
+                            outOfOrder++;
+                            continue;
+                        }
+                        archive.add(game, reader.getDate());
+                    }
+                    games++;
+                    moves += game.getMoves();
+                }
+            } finally {
+                reader.close();
+                if (archive != null) {
+                    archive.close();
+                }
+            }
+            System.out.println((archive != null ? "Unpacked " : "Scanned ") + games + " games (" + moves
+                    + " moves)" + (outOfOrder > 0 ? ", not unpacked " + outOfOrder + " dated before the last archived game"
+                    : "") + " in " + (System.nanoTime() - start) / 1000000 + " ms");
+        } catch (IOException e) {
+            System.err.println("Unexpected I/O Error: " + e.getMessage());
+        }
+    }
+}
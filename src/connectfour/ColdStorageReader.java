@@ -0,0 +1,192 @@
+package connectfour;
+
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * Reads games in the cold storage format (see {@link ColdStorage}) a block at a time,
+ * playing each game's moves straight into a {@link GameEngine} as they are decoded.
+ *
+ * @author elliot gorman
+ */
+final class ColdStorageReader {
+    /**
+     * The file being read.
+     */
+    private final DataInputStream in;
+
+    /**
+     * Decompresses each block.
+     */
+    private final Inflater inflater = new Inflater();
+
+    /**
+     * The uncompressed games of the current block.
+     */
+    private final byte[] block = new byte[ColdStorage.GAMES_PER_BLOCK * ColdStorage.MAX_GAME_BYTES];
+
+    /**
+     * The compressed block (grown as needed).
+     */
+    private byte[] compressed = new byte[8192];
+
+    /**
+     * The size of the current block, in bytes.
+     */
+    private int limit;
+
+    /**
+     * The position of the next game in the current block.
+     */
+    private int position;
+
+    /**
+     * The number of games left in the current block.
+     */
+    private int blockGames;
+
+    /**
+     * The date of the last game read.
+     */
+    private long date;
+
+    /**
+     * Instantiates a new reader, checking the file header.
+     *
+     * @param in where to read the games from
+     * @throws IOException if the header can't be read, or isn't a cold storage file
+     */
+    ColdStorageReader(InputStream in) throws IOException {
+        this.in = new DataInputStream(in);
+        if (this.in.readInt() != ColdStorage.MAGIC || this.in.readByte() != ColdStorage.VERSION) {
+            throw new IOException("Not a cold storage file");
+        }
+    }
+
+    /**
+     * Reads the next game, playing it into a game.
+     *
+     * @param game the game to replace
+     * @return {@code true} if a game was read, {@code false} at the end of the file
+     * @throws IOException if the file can't be read, or has an invalid game
+     */
+    boolean next(GameEngine game) throws IOException {
+        if (blockGames == 0 && !readBlock()) return false;
+        blockGames--;
+        long delta = getVarint();
+        date += (delta >>> 1) ^ -(delta & 1);
+        int result = (int) getVarint() - 1;
+        int moves = (int) getVarint();
+        if (moves > BitBoard.CELLS) throw new IOException("Corrupt game: " + moves + " moves");
+
+        game.reset();
+        int bits = 0;
+        int count = 0;
+        for (int i = 0; i < moves; i++) {
+            if (count < ColdStorage.MOVE_BITS) {
+                if (position >= limit) throw new IOException("Corrupt block");
+                bits |= (block[position++] & 0xFF) << count;
+                count += 8;
+            }
+            if (game.play(bits & 7) == -1) throw new IOException("Corrupt game: illegal move");
+            bits >>>= ColdStorage.MOVE_BITS;
+            count -= ColdStorage.MOVE_BITS;
+        }
+        if (game.getWinner() != result) throw new IOException("Corrupt game: wrong result");
+        return true;
+    }
+
+    /**
+     * Getter for when the last game read was played.
+     *
+     * @return the date, in milliseconds since 1970
+     */
+    long getDate() {
+        return date;
+    }
+
+    /**
+     * Reads and decompresses the next block.
+     *
+     * @return {@code true} if a block was read, {@code false} at the end of the file
+     * @throws IOException if the block can't be read or is corrupt
+     */
+    private boolean readBlock() throws IOException {
+        int games = in.read();
+        if (games == -1) return false;
+        //the first byte of the game count is already read
+        games = (games & 0x80) == 0 ? games : games & 0x7F | readVarint() << 7;
+        int size = readVarint();
+        int length = readVarint();
+        if (games <= 0 || games > ColdStorage.GAMES_PER_BLOCK || size > block.length || length < 0) {
+            throw new IOException("Corrupt block");
+        }
+        if (length > compressed.length) {
+            compressed = new byte[length];
+        }
+        in.readFully(compressed, 0, length);
+
+        inflater.reset();
+        inflater.setInput(compressed, 0, length);
+        try {
+            if (inflater.inflate(block, 0, size) != size || !inflater.finished()) {
+                throw new IOException("Corrupt block");
+            }
+        } catch (DataFormatException e) {
+            throw new IOException("Corrupt block: " + e.getMessage());
+        }
+        limit = size;
+        position = 0;
+        blockGames = games;
+        date = 0;
+        return true;
+    }
+
+    /**
+     * Reads a variable-length integer from the current block.
+     *
+     * @return the value
+     * @throws IOException if the value runs past the end of the block
+     */
+    private long getVarint() throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            if (position >= limit) throw new IOException("Corrupt block");
+            int b = block[position++];
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) return value;
+        }
+        throw new IOException("Corrupt block");
+    }
+
+    /**
+     * Reads a variable-length integer from the file.
+     *
+     * @return the value
+     * @throws IOException if it can't be read
+     */
+    private int readVarint() throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            int b = in.read();
+            if (b == -1) throw new EOFException();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) return value;
+        }
+        throw new IOException("Corrupt block");
+    }
+
+    /**
+     * Closes the file.
+     *
+     * @throws IOException if it can't be closed
+     */
+    void close() throws IOException {
+        inflater.end();
+        in.close();
+    }
+}
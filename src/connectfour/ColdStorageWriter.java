@@ -0,0 +1,183 @@
+package connectfour;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.Deflater;
+
+/**
+ * Writes games in the cold storage format (see {@link ColdStorage}), a block at a time.
+ *
+ * @author elliot gorman
+ */
+final class ColdStorageWriter {
+    /**
+     * The file being written.
+     */
+    private final DataOutputStream out;
+
+    /**
+     * Compresses each block.
+     */
+    private final Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION);
+
+    /**
+     * The uncompressed games of the current block.
+     */
+    private final byte[] block = new byte[ColdStorage.GAMES_PER_BLOCK * ColdStorage.MAX_GAME_BYTES];
+
+    /**
+     * The compressed block (reused for every block).
+     */
+    private final ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+
+    /**
+     * Space for the compressor's output.
+     */
+    private final byte[] chunk = new byte[8192];
+
+    /**
+     * The size of the current block, in bytes.
+     */
+    private int size;
+
+    /**
+     * The number of games in the current block.
+     */
+    private int blockGames;
+
+    /**
+     * The number of games written.
+     */
+    private long games;
+
+    /**
+     * The date of the last game written in the current block.
+     */
+    private long lastDate;
+
+    /**
+     * Instantiates a new writer, writing the file header.
+     *
+     * @param out where to write the games
+     * @throws IOException if the header can't be written
+     */
+    ColdStorageWriter(OutputStream out) throws IOException {
+        this.out = new DataOutputStream(out);
+        this.out.writeInt(ColdStorage.MAGIC);
+        this.out.writeByte(ColdStorage.VERSION);
+    }
+
+    /**
+     * Writes a game.
+     *
+     * @param game the game
+     * @param date when the game was played, in milliseconds since 1970
+     * @throws IOException if a finished block can't be written
+     */
+    void write(GameEngine game, long date) throws IOException {
+        int[] moves = game.getHistory();
+        //dates are usually close together, so the difference is short
+        long delta = date - lastDate;
+        putVarint((delta << 1) ^ (delta >> 63));
+        lastDate = date;
+        putVarint(game.getWinner() + 1);
+        putVarint(moves.length);
+
+        //three bits a move, lowest bits first
+        int bits = 0;
+        int count = 0;
+        for (int i = 0; i < moves.length; i++) {
+            bits |= moves[i] << count;
+            count += ColdStorage.MOVE_BITS;
+            if (count >= 8) {
+                block[size++] = (byte) bits;
+                bits >>>= 8;
+                count -= 8;
+            }
+        }
+        if (count > 0) {
+            block[size++] = (byte) bits;
+        }
+
+        games++;
+        if (++blockGames == ColdStorage.GAMES_PER_BLOCK) {
+            writeBlock();
+        }
+    }
+
+    /**
+     * Adds a variable-length integer to the current block.
+     *
+     * @param value the value (treated as unsigned)
+     */
+    private void putVarint(long value) {
+        while ((value & ~0x7FL) != 0) {
+            block[size++] = (byte) (value & 0x7F | 0x80);
+            value >>>= 7;
+        }
+        block[size++] = (byte) value;
+    }
+
+    /**
+     * Writes a variable-length integer to the file.
+     *
+     * @param value the value
+     * @throws IOException if it can't be written
+     */
+    private void writeVarint(int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            out.writeByte(value & 0x7F | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+
+    /**
+     * Compresses and writes the current block, then starts a new one.
+     *
+     * @throws IOException if it can't be written
+     */
+    private void writeBlock() throws IOException {
+        if (blockGames == 0) return;
+        deflater.reset();
+        deflater.setInput(block, 0, size);
+        deflater.finish();
+        compressed.reset();
+        while (!deflater.finished()) {
+            compressed.write(chunk, 0, deflater.deflate(chunk));
+        }
+        writeVarint(blockGames);
+        writeVarint(size);
+        writeVarint(compressed.size());
+        compressed.writeTo(out);
+        //every block starts afresh, so each can be decoded on its own
+        size = 0;
+        blockGames = 0;
+        lastDate = 0;
+    }
+
+    /**
+     * Getter for the number of games written.
+     *
+     * @return the game count
+     */
+    long getGames() {
+        return games;
+    }
+
+    /**
+     * Writes the last block, then closes the file.
+     *
+     * @throws IOException if it can't be written or closed
+     */
+    void close() throws IOException {
+        try {
+            writeBlock();
+        } finally {
+            deflater.end();
+            out.close();
+        }
+    }
+}
@@ -0,0 +1,475 @@
+package connectfour;
+
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicReference;
+import javax.swing.SwingUtilities;
+import javax.swing.Timer;
+
+/**
+ * The computer opponent, which plays as player two when enabled.
+ * <p>
+ * The computer thinks on a thread of its own, so the window keeps painting and answering
+ * while it does. Its best move so far is kept as the search deepens, and a timer shows the
+ * latest one every {@link #UPDATE_INTERVAL} milliseconds. Each move asked for is
+ * a job with its own cancelled flag, which its search checks as it runs (whichever search objects
+ * it happens to use), so a cancelled search stops at once and its results are dropped.
+ *
+ * @author elliot gorman
+ */
+final class ComputerPlayer {
+    /**
+     * The player the computer plays as.
+     */
+    static final int PLAYER = 2;
+
+    /**
+     * The default time the computer may think for, in milliseconds.
+     */
+    static final long DEFAULT_TIME_BUDGET = 500;
+
+    /**
+     * The default memory for the transposition table, in megabytes.
+     */
+    static final int DEFAULT_TABLE_MEGABYTES = 64;
+
+    /**
+     * The default number of search threads, one per processor.
+     */
+    static final int DEFAULT_THREADS = Runtime.getRuntime().availableProcessors();
+
+    /**
+     * The time between reports of the best move so far, in milliseconds.
+     */
+    static final int UPDATE_INTERVAL = 100;
+
+    /**
+     * The thread the computer thinks on.
+     */
+    private static final ExecutorService thinker = Executors.newSingleThreadExecutor(new ThreadFactory() {
+        //@Override
+        public Thread newThread(Runnable r) {
+            //the thinking thread never keeps the program running
+            Thread thread = new Thread(r, "Computer Player");
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+
+    /**
+     * The move the computer is thinking about, or {@code null} if none
+     * (only used on the Event Dispatch Thread).
+     */
+    private static Job current;
+
+    /**
+     * The timer which reports the best move so far, while the computer thinks.
+     */
+    private static final Timer updates = new Timer(UPDATE_INTERVAL, new ActionListener() {
+        //@Override
+        public void actionPerformed(ActionEvent actionEvent) {
+            if (current == null) return;
+            //only the latest improvement is shown, so none is more than one interval out of date
+            SearchResult best = current.latest.getAndSet(null);
+            if (best != null) {
+                current.listener.thinking(best);
+            }
+        }
+    });
+
+    /**
+     * The opening book, which is only read once the computer first moves.
+     */
+    private static final OpeningBook book = new OpeningBook(OpeningBookBuilder.DEFAULT_PATH);
+
+    /**
+     * Flag for playing against the computer.
+     */
+    private static boolean enabled = false;
+
+    /**
+     * The time the computer may think for, in milliseconds.
+     */
+    private static long timeBudget = DEFAULT_TIME_BUDGET;
+
+    /**
+     * The table of search results, kept between moves (created on first use).
+     */
+    private static TranspositionTable table;
+
+    /**
+     * The memory for the transposition table, in megabytes.
+     */
+    private static int tableMegabytes = DEFAULT_TABLE_MEGABYTES;
+
+    /**
+     * The number of search threads.
+     */
+    private static int threads = DEFAULT_THREADS;
+
+    /**
+     * The search, kept between moves so its threads are reused (created on first use).
+     */
+    private static ParallelSearch search;
+
+    /**
+     * Flag for searching with Monte Carlo tree search instead of alpha-beta.
+     */
+    private static boolean monteCarlo = false;
+
+    /**
+     * The Monte Carlo search, kept between moves so its trees and threads are reused (created on first use).
+     */
+    private static MonteCarloSearch monteCarloSearch;
+
+    /**
+     * Hides the default public constructor.
+     */
+    private ComputerPlayer() {
+        throw new IllegalStateException("Utility Class");
+    }
+
+    /**
+     * Enables/Disables the computer opponent, dropping any move it is thinking about.
+     */
+    static void switchEnabled() {
+        cancel();
+        enabled = !enabled;
+    }
+
+    /**
+     * Getter for the computer opponent flag.
+     *
+     * @return {@code true} if player two is played by the computer
+     */
+    static boolean getEnabledState() {
+        return enabled;
+    }
+
+    /**
+     * Setter for the thinking time.
+     *
+     * @param millis the time the computer may think for, in milliseconds
+     */
+    static void setTimeBudget(long millis) {
+        timeBudget = millis;
+    }
+
+    /**
+     * Getter for the thinking time.
+     *
+     * @return the time the computer may think for, in milliseconds
+     */
+    static long getTimeBudget() {
+        return timeBudget;
+    }
+
+    /**
+     * Setter for the transposition table's memory, which takes effect on the next move.
+     *
+     * @param megabytes the memory to use, in megabytes
+     */
+    static synchronized void setTableMegabytes(int megabytes) {
+        tableMegabytes = megabytes;
+        table = null;
+        setThreads(threads);
+    }
+
+    /**
+     * Setter for the number of search threads, which takes effect on the next move
+     * (any move the computer is thinking about is dropped).
+     *
+     * @param count the number of threads
+     */
+    static synchronized void setThreads(int count) {
+        cancel();
+        threads = count;
+        final ParallelSearch oldSearch = search;
+        final MonteCarloSearch oldMonteCarloSearch = monteCarloSearch;
+        search = null;
+        monteCarloSearch = null;
+        //the cancelled move may still be searching on them, so they are shut down once it returns
+        thinker.execute(new Runnable() {
+            //@Override
+            public void run() {
+                if (oldSearch != null) {
+                    oldSearch.shutdown();
+                }
+                if (oldMonteCarloSearch != null) {
+                    oldMonteCarloSearch.shutdown();
+                }
+            }
+        });
+    }
+
+    /**
+     * Switches between alpha-beta and Monte Carlo tree search, dropping any move the computer
+     * is thinking about.
+     */
+    static synchronized void switchMonteCarlo() {
+        cancel();
+        monteCarlo = !monteCarlo;
+    }
+
+    /**
+     * Getter for the Monte Carlo tree search flag.
+     *
+     * @return {@code true} if the computer uses Monte Carlo tree search
+     */
+    static synchronized boolean getMonteCarloState() {
+        return monteCarlo;
+    }
+
+    /**
+     * Getter for the number of search threads.
+     *
+     * @return the thread count
+     */
+    static synchronized int getThreads() {
+        return threads;
+    }
+
+    /**
+     * Getter for the transposition table, creating it if needed.
+     *
+     * @return the table
+     */
+    static synchronized TranspositionTable getTable() {
+        if (table == null) {
+            table = new TranspositionTable(tableMegabytes);
+        }
+        return table;
+    }
+
+    /**
+     * Checks if it's the computer's turn in a game.
+     *
+     * @param game the game
+     * @return {@code true} if the computer should move next
+     */
+    static boolean isTurn(GameEngine game) {
+        return enabled && game.getWinner() == 0 && game.getPlayer() == PLAYER;
+    }
+
+    /**
+     * Getter for the thinking flag.
+     *
+     * @return {@code true} if the computer is thinking about its move
+     */
+    static boolean isThinking() {
+        return current != null;
+    }
+
+    /**
+     * Starts the computer thinking about its move on its own thread.
+     * Called on the Event Dispatch Thread, and the listener hears back on it too.
+     *
+     * @param game     the game (copied, so it may change while the computer thinks)
+     * @param listener told the best move so far, then the move chosen
+     */
+    static void think(GameEngine game, MoveListener listener) {
+        current = new Job(game, listener);
+        thinker.execute(current);
+        updates.start();
+    }
+
+    /**
+     * Stops the computer thinking and drops its move (when the game is reset or loaded, the
+     * computer's settings change, or the window closes). Called on the Event Dispatch Thread.
+     * Clicking the grid starts it thinking again.
+     */
+    static void cancel() {
+        if (current == null) return;
+        current.cancelled = true;
+        current = null;
+        updates.stop();
+        //the thinking display is out of date
+        GameData.setPlayer();
+        System.out.println("COMPUTER STOPPED THINKING\n");
+    }
+
+    /**
+     * Searches for the computer's move on every search thread,
+     * printing the depth reached, search speed, node ratio between threads and table usage.
+     *
+     * @param game the game
+     * @return the search result, or {@code null} if there are no moves left
+     */
+    static SearchResult chooseMove(GameEngine game) {
+        return chooseMove(game.copyBoard(), game.getPlayer(), null);
+    }
+
+    /**
+     * Searches for the computer's move on every search thread,
+     * printing the depth reached, search speed, node ratio between threads and table usage
+     * (unless the search was stopped).
+     *
+     * @param board    the board (a copy)
+     * @param player   the player to move
+     * @param listener told the best move after each depth of an alpha-beta search, and asked if the
+     *                 search is cancelled, or {@code null} for none
+     * @return the search result, or {@code null} if there are no moves left
+     */
+    private static SearchResult chooseMove(BitBoard board, int player, SearchListener listener) {
+        //early in the game the answer is already in the book, unless the computer may think
+        //for longer than each position was searched when the book was built
+        long start = System.nanoTime();
+        int entry = timeBudget > book.getBudget() ? -1 : book.find(TranspositionTable.key(board, player));
+        if (entry >= 0) {
+            //the book's move may be for the mirror image
+            int move = board.isMirrored() ? BitBoard.mirrorColumn(book.getMove(entry)) : book.getMove(entry);
+            SearchResult result = new SearchResult(move, book.getScore(entry), book.getDepth(entry),
+                    0, System.nanoTime() - start);
+            System.out.println("COMPUTER PLAYS FROM BOOK " + result + "\n");
+            return result;
+        }
+
+        MonteCarloSearch m = null;
+        synchronized (ComputerPlayer.class) {
+            if (monteCarlo) {
+                if (monteCarloSearch == null) {
+                    monteCarloSearch = new MonteCarloSearch(threads, MonteCarloSearch.DEFAULT_CAPACITY);
+                }
+                m = monteCarloSearch;
+            }
+        }
+        if (m != null) {
+            SearchResult result = m.search(board, player, timeBudget, listener);
+            if (result != null && (listener == null || !listener.isCancelled())) {
+                System.out.println("COMPUTER PLAYS (MONTE CARLO) " + result + "\n");
+            }
+            return result;
+        }
+
+        TranspositionTable t = getTable();
+        ParallelSearch s;
+        synchronized (ComputerPlayer.class) {
+            if (search == null) {
+                search = new ParallelSearch(t, threads);
+            }
+            s = search;
+        }
+        SearchResult result = s.search(board, player, timeBudget, listener);
+        if (result != null && (listener == null || !listener.isCancelled())) {
+            System.out.println("COMPUTER PLAYS " + result);
+            System.out.println(t + "\n");
+        }
+        return result;
+    }
+
+    /**
+     * A move the computer has been asked for, searched on the computer's thread.
+     */
+    private static final class Job implements Runnable, SearchListener {
+        /**
+         * The game.
+         */
+        private final GameEngine game;
+
+        /**
+         * The board searched (a copy of the game's).
+         */
+        private final BitBoard board;
+
+        /**
+         * The player to move.
+         */
+        private final int player;
+
+        /**
+         * Told the best move so far, then the move chosen.
+         */
+        private final MoveListener listener;
+
+        /**
+         * Set on the Event Dispatch Thread to stop the search and drop its results.
+         */
+        private volatile boolean cancelled;
+
+        /**
+         * The best move found since the last report, or {@code null} if none.
+         */
+        private final AtomicReference<SearchResult> latest = new AtomicReference<SearchResult>();
+
+        /**
+         * Instantiates a new job, copying the game's board.
+         *
+         * @param game     the game
+         * @param listener told the best move so far, then the move chosen
+         */
+        Job(GameEngine game, MoveListener listener) {
+            this.game = game;
+            this.board = game.copyBoard();
+            this.player = game.getPlayer();
+            this.listener = listener;
+        }
+
+        /**
+         * Searches for the move, then hands it to the Event Dispatch Thread.
+         */
+        //@Override
+        public void run() {
+            //cancelled before it started
+            if (cancelled) return;
+
+            SearchResult result = null;
+            try {
+                result = chooseMove(board, player, this);
+            } catch (RuntimeException e) {
+                System.err.println("Computer player failed: " + e);
+            }
+
+            final SearchResult chosen = result;
+            SwingUtilities.invokeLater(new Runnable() {
+                //@Override
+                public void run() {
+                    //dropped if the game was reset or loaded meanwhile
+                    if (current != Job.this) return;
+                    current = null;
+                    updates.stop();
+                    if (!isSamePosition()) {
+                        System.err.println("Dropped the computer's move, the game changed while it was thinking.");
+                        GameData.setPlayer();
+                        return;
+                    }
+                    listener.chosen(chosen);
+                }
+            });
+        }
+
+        /**
+         * Checks the game is still in the position that was searched (on the Event Dispatch Thread).
+         *
+         * @return {@code true} if the move chosen can still be played
+         */
+        private boolean isSamePosition() {
+            BitBoard now = game.copyBoard();
+            return game.getPlayer() == player && now.getMask() == board.getMask()
+                    && now.getPieces(1) == board.getPieces(1);
+        }
+
+        /**
+         * Keeps the best move so far, for the timer to report (the early depths finish far
+         * faster than the display needs).
+         *
+         * @param best the best move so far
+         */
+        //@Override
+        public void improved(SearchResult best) {
+            latest.set(best);
+        }
+
+        /**
+         * Checks if the job has been cancelled, from the search threads.
+         *
+         * @return {@code true} if the search should stop
+         */
+        //@Override
+        public boolean isCancelled() {
+            return cancelled;
+        }
+    }
+}
@@ -33,6 +33,8 @@ import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
 import java.awt.event.InputEvent;
 import java.awt.event.KeyEvent;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
 import java.io.File;
 import java.io.IOException;
 import javax.swing.ImageIcon;
@@ -82,9 +84,16 @@ final class ConnectFour {
             //@Override
             public void run() {
                 //starts GUI
-                new ConnectFour().main.setVisible(true);
+                ConnectFour connectFour = new ConnectFour();
+                //carries on the game from last time
+                GameData.recoverGame();
+                GameData.openArchive();
+                GridPane.refresh();
+                connectFour.main.setVisible(true);
             }
         });
+        //the settings load while the GUI is created
+        GameData.loadSettings();
     }
 
     /**
@@ -119,6 +128,87 @@ final class ConnectFour {
             }
         });
 
+        /*
+         * The listener for enabling/disabling the computer opponent.
+         */
+        computerOpponentMenuItem.addActionListener(new ActionListener() {
+            //@Override
+            public void actionPerformed(ActionEvent actionEvent) {
+                //switches on/off
+                ComputerPlayer.switchEnabled();
+                computerOpponentMenuItem.setText(ComputerPlayer.getEnabledState() ? "Disable Computer Opponent" : "Enable Computer Opponent");
+            }
+        });
+
+        /*
+         * The listener for switching the computer's search method.
+         */
+        monteCarloMenuItem.addActionListener(new ActionListener() {
+            //@Override
+            public void actionPerformed(ActionEvent actionEvent) {
+                //switches between alpha-beta and Monte Carlo
+                ComputerPlayer.switchMonteCarlo();
+                monteCarloMenuItem.setText(ComputerPlayer.getMonteCarloState() ? "Use Alpha-Beta Search" : "Use Monte Carlo Search");
+            }
+        });
+
+        /*
+         * The listeners for the computer's thinking time.
+         */
+        for (int i = 0; i < THINK_TIMES.length; i++) {
+            final long millis = THINK_TIMES[i];
+            JMenuItem item = new JMenuItem(millis + " ms");
+            item.addActionListener(new ActionListener() {
+                //@Override
+                public void actionPerformed(ActionEvent actionEvent) {
+                    ComputerPlayer.setTimeBudget(millis);
+                    thinkTimeMenu.setText("Computer Think Time (" + millis + " ms)");
+                }
+            });
+            thinkTimeMenu.add(item);
+        }
+
+        /*
+         * The listeners for the number of threads the computer searches with.
+         */
+        int[] threadCounts = {1, 2, 4, ComputerPlayer.DEFAULT_THREADS};
+        for (int i = 0; i < threadCounts.length; i++) {
+            final int count = threadCounts[i];
+            //skip counts above the number of processors (or repeating it)
+            if (count > ComputerPlayer.DEFAULT_THREADS || (i < threadCounts.length - 1 && count == ComputerPlayer.DEFAULT_THREADS)) {
+                continue;
+            }
+            JMenuItem item = new JMenuItem(count + (count == 1 ? " thread" : " threads"));
+            item.addActionListener(new ActionListener() {
+                //@Override
+                public void actionPerformed(ActionEvent actionEvent) {
+                    ComputerPlayer.setThreads(count);
+                    threadsMenu.setText("Computer Threads (" + count + ")");
+                }
+            });
+            threadsMenu.add(item);
+        }
+
+        /*
+         * The listeners for the memory the computer's transposition table uses.
+         */
+        for (int i = 0; i < TABLE_MEGABYTES.length; i++) {
+            final int megabytes = TABLE_MEGABYTES[i];
+            //skip sizes the program doesn't have the memory for
+            if ((long) megabytes * 1024 * 1024 > Runtime.getRuntime().maxMemory() / 2) {
+                continue;
+            }
+            JMenuItem item = new JMenuItem(megabytes + " MB");
+            item.addActionListener(new ActionListener() {
+                //@Override
+                public void actionPerformed(ActionEvent actionEvent) {
+                    ComputerPlayer.setTableMegabytes(megabytes);
+                    tableMenu.setText("Computer Memory (" + megabytes + " MB)");
+                }
+            });
+            tableMenu.add(item);
+        }
+
 	/*
 	 The listener for the save option
 	 */
@@ -233,6 +323,13 @@ final class ConnectFour {
         //some metrics of the frame are set here
         main.setBackground(Color.WHITE);
         main.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
+        main.addWindowListener(new WindowAdapter() {
+            //@Override
+            public void windowClosing(WindowEvent windowEvent) {
+                //stop the computer thinking before the program exits
+                ComputerPlayer.cancel();
+            }
+        });
         main.getContentPane().setLayout(new BorderLayout());
         main.setSize(new Dimension(653, 612));
         main.getContentPane().add(new GridPane(), BorderLayout.CENTER);
@@ -326,6 +423,11 @@ final class ConnectFour {
         optionsMenu.add(colorChooserMenuItem);
         optionsMenu.add(disableHoversMenuItem);
         optionsMenu.add(disableColumnHighlightsItem);
+        optionsMenu.add(computerOpponentMenuItem);
+        optionsMenu.add(monteCarloMenuItem);
+        optionsMenu.add(thinkTimeMenu);
+        optionsMenu.add(threadsMenu);
+        optionsMenu.add(tableMenu);
 
         //adds all the items to the help menu
         helpMenu.add(aboutMenuItem);
@@ -451,6 +553,41 @@ final class ConnectFour {
      */
     private JMenu optionsMenu = new JMenu("Options");
 
+    /**
+     * The thinking times offered for the computer opponent, in milliseconds.
+     */
+    private static final long[] THINK_TIMES = {50, 500, 2000};
+
+    /**
+     * The menu for choosing how long the computer opponent thinks for.
+     */
+    private JMenu thinkTimeMenu = new JMenu("Computer Think Time (" + ComputerPlayer.DEFAULT_TIME_BUDGET + " ms)");
+
+    /**
+     * The menu for choosing how many threads the computer opponent searches with.
+     */
+    private JMenu threadsMenu = new JMenu("Computer Threads (" + ComputerPlayer.DEFAULT_THREADS + ")");
+
+    /**
+     * The transposition table sizes offered for the computer opponent, in megabytes.
+     */
+    private static final int[] TABLE_MEGABYTES = {16, ComputerPlayer.DEFAULT_TABLE_MEGABYTES, 256, 1024};
+
+    /**
+     * The menu for choosing how much memory the computer opponent's transposition table uses.
+     */
+    private JMenu tableMenu = new JMenu("Computer Memory (" + ComputerPlayer.DEFAULT_TABLE_MEGABYTES + " MB)");
+
+    /**
+     * The menu item for enabling/disabling the computer opponent.
+     */
+    private JMenuItem computerOpponentMenuItem = new JMenuItem("Enable Computer Opponent");
+
+    /**
+     * The menu item for switching the computer opponent between alpha-beta and Monte Carlo search.
+     */
+    private JMenuItem monteCarloMenuItem = new JMenuItem("Use Monte Carlo Search");
+
     /**
      * The menu item for changing the colors
      */
@@ -0,0 +1,286 @@
+package connectfour;
+
+import java.awt.Rectangle;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.util.ArrayList;
+import java.util.List;
+import javax.swing.Timer;
+
+/**
+ * A piece falling into its place on a grid, with a small bounce as it lands.
+ * <p>
+ * Every falling piece, on every grid, is moved by one timer on the Event Dispatch Thread, which
+ * only runs while pieces are falling. Where each piece is depends only on how long it has been
+ * falling, so when the program is busy the timer's late ticks are merged into one and frames are
+ * skipped rather than queued up. Each frame only repaints the strip of the column each piece
+ * moved through. The frame times are printed once every piece has landed.
+ *
+ * @author elliot gorman
+ */
+final class DropAnimation {
+    /**
+     * The time between frames, in milliseconds (60 frames a second).
+     */
+    static final int FRAME_DELAY = 16;
+
+    /**
+     * How fast the pieces speed up, in cells per second per second.
+     */
+    static final double GRAVITY = 120;
+
+    /**
+     * The share of its speed a piece keeps when it bounces.
+     */
+    static final double BOUNCE = 0.25;
+
+    /**
+     * The pieces falling, on every grid.
+     */
+    private static final List<DropAnimation> drops = new ArrayList<DropAnimation>();
+
+    /**
+     * The timer which moves the pieces.
+     */
+    private static final Timer timer = new Timer(FRAME_DELAY, new ActionListener() {
+        //@Override
+        public void actionPerformed(ActionEvent actionEvent) {
+            frame();
+        }
+    });
+
+    static {
+        //late ticks are merged into one, so a busy program skips frames
+        timer.setCoalesce(true);
+    }
+
+    /**
+     * When the last frame ran (from {@link System#nanoTime()}).
+     */
+    private static long lastFrame;
+
+    /**
+     * The number of frames since the pieces started falling.
+     */
+    private static int frames;
+
+    /**
+     * The number of frames skipped since the pieces started falling.
+     */
+    private static int skippedFrames;
+
+    /**
+     * The total time between frames since the pieces started falling, in nanoseconds.
+     */
+    private static long frameTime;
+
+    /**
+     * The longest time between frames since the pieces started falling, in nanoseconds.
+     */
+    private static long longestFrame;
+
+    /**
+     * The grid the piece is falling on.
+     */
+    private final GridPane grid;
+
+    /**
+     * The column the piece is falling down.
+     */
+    private final int column;
+
+    /**
+     * The row (counted from the top) the piece lands in.
+     */
+    private final int row;
+
+    /**
+     * When the piece started falling (from {@link System#nanoTime()}).
+     */
+    private final long start;
+
+    /**
+     * Where the piece was last painted, or {@code null} if not yet.
+     */
+    private Rectangle painted;
+
+    /**
+     * Instantiates a new falling piece.
+     *
+     * @param grid   the grid
+     * @param column the column
+     * @param row    the row (counted from the top) the piece lands in
+     */
+    private DropAnimation(GridPane grid, int column, int row) {
+        this.grid = grid;
+        this.column = column;
+        this.row = row;
+        this.start = System.nanoTime();
+    }
+
+    /**
+     * Starts a piece falling into its place.
+     *
+     * @param grid   the grid
+     * @param column the column
+     * @param row    the row (counted from the top) the piece lands in
+     */
+    static void start(GridPane grid, int column, int row) {
+        drops.add(new DropAnimation(grid, column, row));
+        if (!timer.isRunning()) {
+            lastFrame = System.nanoTime();
+            frames = 0;
+            skippedFrames = 0;
+            frameTime = 0;
+            longestFrame = 0;
+            timer.start();
+        }
+    }
+
+    /**
+     * Stops every piece falling on a grid (when the game is loaded or reset).
+     *
+     * @param grid the grid
+     */
+    static void cancel(GridPane grid) {
+        for (int i = drops.size() - 1; i >= 0; i--) {
+            if (drops.get(i).grid == grid) {
+                drops.remove(i);
+            }
+        }
+    }
+
+    /**
+     * Checks if a piece is still falling into a cell, so its place is left empty.
+     *
+     * @param grid   the grid
+     * @param column the column
+     * @param row    the row (counted from the top)
+     * @return {@code true} if the piece is still falling
+     */
+    static boolean isFalling(GridPane grid, int column, int row) {
+        for (int i = 0; i < drops.size(); i++) {
+            DropAnimation drop = drops.get(i);
+            if (drop.grid == grid && drop.column == column && drop.row == row) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Gets the pieces falling on a grid, for painting.
+     *
+     * @param grid the grid
+     * @return for each falling piece its column, row (counted from the top) and where it is now
+     * (in rows from the top, negative above the grid), three numbers to a piece
+     */
+    static double[] getFalling(GridPane grid) {
+        long now = System.nanoTime();
+        int count = 0;
+        for (int i = 0; i < drops.size(); i++) {
+            if (drops.get(i).grid == grid) count++;
+        }
+        double[] falling = new double[count * 3];
+        count = 0;
+        for (int i = 0; i < drops.size(); i++) {
+            DropAnimation drop = drops.get(i);
+            if (drop.grid != grid) continue;
+            falling[count++] = drop.column;
+            falling[count++] = drop.row;
+            falling[count++] = drop.position(now);
+        }
+        return falling;
+    }
+
+    /**
+     * Works out where the piece is: falling from just above the grid, then bouncing once.
+     *
+     * @param now the time (from {@link System#nanoTime()})
+     * @return the position in rows from the top, or {@code NaN} once the piece has landed
+     */
+    private double position(long now) {
+        double t = (now - start) / 1e9;
+        //the time to fall from the row above the grid
+        double fall = Math.sqrt(2 * (row + 1) / GRAVITY);
+        if (t < fall) {
+            return -1 + GRAVITY * t * t / 2;
+        }
+        t -= fall;
+        double speed = GRAVITY * fall * BOUNCE;
+        if (t < 2 * speed / GRAVITY) {
+            return row - (speed * t - GRAVITY * t * t / 2);
+        }
+        return Double.NaN;
+    }
+
+    /**
+     * Moves every falling piece, repainting the strips they moved through, and stops the timer
+     * once they have all landed.
+     */
+    private static void frame() {
+        long now = System.nanoTime();
+        long interval = now - lastFrame;
+        if (interval > 0) {
+            frames++;
+            frameTime += interval;
+            longestFrame = Math.max(longestFrame, interval);
+            //the frames merged into this one
+            skippedFrames += Math.max(0, (int) (interval / (FRAME_DELAY * 1000000L)) - 1);
+        }
+        lastFrame = now;
+
+        for (int i = drops.size() - 1; i >= 0; i--) {
+            DropAnimation drop = drops.get(i);
+            double position = drop.position(now);
+            Rectangle bounds = drop.grid.pieceBounds(drop.column, Double.isNaN(position) ? drop.row : position);
+            Rectangle dirty = drop.painted == null ? bounds : bounds.union(drop.painted);
+            drop.painted = bounds;
+            if (Double.isNaN(position)) {
+                //landed, the cell paints the piece from now on
+                drops.remove(i);
+            }
+            drop.grid.repaint(dirty);
+        }
+
+        if (drops.isEmpty() && timer.isRunning()) {
+            timer.stop();
+            System.out.println("ANIMATED " + frames + " frames (" + getFramesPerSecond() + " fps, longest frame "
+                    + longestFrame / 1000000 + " ms, " + skippedFrames + " skipped)\n");
+        }
+    }
+
+    /**
+     * Getter for the number of frames since the pieces last started falling.
+     *
+     * @return the frame count
+     */
+    static int getFrames() {
+        return frames;
+    }
+
+    /**
+     * Getter for the number of frames skipped since the pieces last started falling.
+     *
+     * @return the skipped frame count
+     */
+    static int getSkippedFrames() {
+        return skippedFrames;
+    }
+
+    /**
+     * Gets the frame rate since the pieces last started falling.
+     *
+     * @return the frames per second
+     */
+    static long getFramesPerSecond() {
+        return frameTime == 0 ? 0 : frames * 1000000000L / frameTime;
+    }
+
+    /**
+     * Getter for the longest time between frames since the pieces last started falling.
+     *
+     * @return the longest frame, in milliseconds
+     */
+    static long getLongestFrame() {
+        return longestFrame / 1000000;
+    }
+}
@@ -0,0 +1,436 @@
+package connectfour;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * An archive of any number of games in one memory-mapped file.
+ * <p>
+ * Every game is a fixed-size record, so a game's id (its record number, counting from 1) is
+ * its index, and games are added in date order, so finding games by date is a binary search.
+ * A game dated before the last archived game can't be added.
+ * Listing and filtering by result only read the date and result of each record, straight from
+ * the mapped file, and loading a game only reads its own record.
+ * <p>
+ * File layout: a header of the magic number, version, record size and game count (four ints),
+ * then one record per game: the date (long, milliseconds since 1970), the result (byte, see
+ * {@link GameEngine#getWinner()}), the move count (byte) and the moves packed two columns to a
+ * byte (high four bits first), padded to {@link #RECORD_BYTES}.
+ *
+ * @author elliot gorman
+ */
+final class GameArchive {
+    /**
+     * The number identifying an archive file ("C4AR").
+     */
+    static final int MAGIC = 0x43344152;
+
+    /**
+     * The current file version.
+     */
+    static final int VERSION = 1;
+
+    /**
+     * The size of the header, in bytes.
+     */
+    static final int HEADER_BYTES = 16;
+
+    /**
+     * The size of each record, in bytes.
+     */
+    static final int RECORD_BYTES = 32;
+
+    /**
+     * The most games an archive can hold (so the whole file can be mapped at once).
+     */
+    static final int MAX_GAMES = (Integer.MAX_VALUE - HEADER_BYTES) / RECORD_BYTES;
+
+    /**
+     * The number of games the file first makes room for.
+     */
+    static final int INITIAL_CAPACITY = 1024;
+
+    /**
+     * Matches every result when finding games.
+     */
+    static final int ANY_RESULT = -2;
+
+    /**
+     * The default location of the archive.
+     */
+    static final String DEFAULT_PATH = "connectfour/games.archive";
+
+    /**
+     * The open file.
+     */
+    private final RandomAccessFile file;
+
+    /**
+     * The mapped file, with room for {@link #capacity} games.
+     */
+    private MappedByteBuffer buffer;
+
+    /**
+     * The number of games the mapped file has room for.
+     */
+    private int capacity;
+
+    /**
+     * The number of games in the archive.
+     */
+    private int count;
+
+    /**
+     * Opens an archive, creating it if it doesn't exist.
+     *
+     * @param path the location of the archive
+     * @throws IOException if the file can't be opened, or isn't an archive
+     */
+    GameArchive(String path) throws IOException {
+        boolean exists = new File(path).exists() && new File(path).length() > 0;
+        file = new RandomAccessFile(path, "rw");
+        if (exists) {
+            if (file.length() < HEADER_BYTES) {
+                file.close();
+                throw new IOException("Not a game archive: " + path);
+            }
+            map(Math.max(INITIAL_CAPACITY, (int) ((file.length() - HEADER_BYTES) / RECORD_BYTES)));
+            if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION || buffer.getInt(8) != RECORD_BYTES
+                    || buffer.getInt(12) < 0 || buffer.getInt(12) > capacity) {
+                file.close();
+                throw new IOException("Not a game archive: " + path);
+            }
+            count = buffer.getInt(12);
+        } else {
+            map(INITIAL_CAPACITY);
+            buffer.putInt(0, MAGIC);
+            buffer.putInt(4, VERSION);
+            buffer.putInt(8, RECORD_BYTES);
+            buffer.putInt(12, 0);
+        }
+    }
+
+    /**
+     * Maps the file with room for a number of games, growing the file if needed.
+     *
+     * @param games the number of games to make room for
+     * @throws IOException if the file can't be mapped
+     */
+    private void map(int games) throws IOException {
+        capacity = games;
+        //mapping past the end of the file grows it
+        buffer = file.getChannel().map(FileChannel.MapMode.READ_WRITE, 0,
+                HEADER_BYTES + (long) games * RECORD_BYTES);
+    }
+
+    /**
+     * Getter for the number of games in the archive.
+     *
+     * @return the game count
+     */
+    synchronized int size() {
+        return count;
+    }
+
+    /**
+     * Adds a game to the archive.
+     *
+     * @param game the game (finished or in progress)
+     * @param date when the game was played, in milliseconds since 1970
+     *             (no earlier than the last game's, see {@link #getLastDate()})
+     * @return the id of the game
+     * @throws IOException if the archive is full or can't be grown
+     */
+    synchronized int add(GameEngine game, long date) throws IOException {
+        if (date < getLastDate()) {
+            throw new IllegalArgumentException("Games must be archived in date order");
+        }
+        if (count == MAX_GAMES) throw new IOException("The game archive is full.");
+        if (count == capacity) {
+            map((int) Math.min(MAX_GAMES, 2L * capacity));
+        }
+        write(count, game, date);
+        //only count the game once its record is written
+        buffer.putInt(12, ++count);
+        return count;
+    }
+
+    /**
+     * Replaces a game in the archive (such as an unfinished game which has since finished),
+     * keeping its date.
+     *
+     * @param id   the id of the game
+     * @param game the game
+     */
+    synchronized void update(int id, GameEngine game) {
+        write(index(id), game, getDate(id));
+    }
+
+    /**
+     * Writes a game's record.
+     *
+     * @param index the record number (counting from 0)
+     * @param game  the game
+     * @param date  when the game was played
+     */
+    private void write(int index, GameEngine game, long date) {
+        int[] moves = game.getHistory();
+        int offset = offset(index);
+        buffer.putLong(offset, date);
+        buffer.put(offset + 8, (byte) game.getWinner());
+        buffer.put(offset + 9, (byte) moves.length);
+        for (int i = 0; i < moves.length; i += 2) {
+            int second = i + 1 < moves.length ? moves[i + 1] : 0;
+            buffer.put(offset + 10 + i / 2, (byte) (moves[i] << 4 | second));
+        }
+    }
+
+    /**
+     * Gets the date of a game.
+     *
+     * @param id the id of the game
+     * @return when the game was played, in milliseconds since 1970
+     */
+    synchronized long getDate(int id) {
+        return buffer.getLong(offset(index(id)));
+    }
+
+    /**
+     * Gets the date of the last game, which every game added must be on or after.
+     *
+     * @return when the last game was played, in milliseconds since 1970,
+     * or {@link Long#MIN_VALUE} if the archive is empty
+     */
+    synchronized long getLastDate() {
+        return count == 0 ? Long.MIN_VALUE : getDate(count);
+    }
+
+    /**
+     * Gets the result of a game.
+     *
+     * @param id the id of the game
+     * @return the winner (if any) otherwise 0 for none (still in progress), -1 for tie
+     */
+    synchronized int getResult(int id) {
+        return buffer.get(offset(index(id)) + 8);
+    }
+
+    /**
+     * Gets the moves of a game.
+     *
+     * @param id the id of the game
+     * @return the column of every move, in order
+     */
+    synchronized int[] getMoves(int id) {
+        int offset = offset(index(id));
+        int[] moves = new int[buffer.get(offset + 9)];
+        for (int i = 0; i < moves.length; i++) {
+            int b = buffer.get(offset + 10 + i / 2);
+            moves[i] = i % 2 == 0 ? b >> 4 & 0xF : b & 0xF;
+        }
+        return moves;
+    }
+
+    /**
+     * Loads a game from the archive.
+     *
+     * @param id   the id of the game
+     * @param game the game to replace
+     * @return {@code true} if the game's moves were all legal, otherwise the game is left reset
+     */
+    boolean load(int id, GameEngine game) {
+        return game.replay(getMoves(id));
+    }
+
+    /**
+     * Finds the first game played on or after a date.
+     *
+     * @param date the date, in milliseconds since 1970
+     * @return the id of the game, or one more than the last id if every game is earlier
+     */
+    synchronized int firstOnOrAfter(long date) {
+        int low = 0;
+        int high = count;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (buffer.getLong(offset(mid)) < date) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low + 1;
+    }
+
+    /**
+     * Finds the games with a result, played between two dates.
+     *
+     * @param result the result to match (see {@link #getResult(int)}), or {@link #ANY_RESULT}
+     * @param from   the earliest date (inclusive)
+     * @param to     the latest date (inclusive)
+     * @param max    the most games to find
+     * @return the ids of the games, in date order
+     */
+    synchronized int[] find(int result, long from, long to, int max) {
+        int[] ids = new int[Math.min(max, 64)];
+        int found = 0;
+        for (int i = firstOnOrAfter(from) - 1; i < count && found < max; i++) {
+            int offset = offset(i);
+            if (buffer.getLong(offset) > to) break;
+            if (result != ANY_RESULT && buffer.get(offset + 8) != result) continue;
+            if (found == ids.length) {
+                int[] bigger = new int[Math.min(max, ids.length * 2)];
+                System.arraycopy(ids, 0, bigger, 0, found);
+                ids = bigger;
+            }
+            ids[found++] = i + 1;
+        }
+        int[] trimmed = new int[found];
+        System.arraycopy(ids, 0, trimmed, 0, found);
+        return trimmed;
+    }
+
+    /**
+     * Finds the games which are duplicates of earlier ones: those ending in the same position
+     * as an earlier game, or in its mirror image.
+     *
+     * @return for each game (by id, with index 0 unused) the id of the earlier game it duplicates,
+     * or 0 if it isn't a duplicate
+     */
+    synchronized int[] findDuplicates() {
+        int[] duplicates = new int[count + 1];
+        Map<Long, Integer> first = new HashMap<Long, Integer>();
+        GameEngine game = new GameEngine();
+        for (int id = 1; id <= count; id++) {
+            if (!load(id, game)) continue;
+            Integer earlier = first.get(Long.valueOf(game.getKey()));
+            if (earlier == null) {
+                first.put(Long.valueOf(game.getKey()), Integer.valueOf(id));
+            } else {
+                duplicates[id] = earlier.intValue();
+            }
+        }
+        return duplicates;
+    }
+
+    /**
+     * Writes every change to disk and closes the archive.
+     *
+     * @throws IOException if the file can't be closed
+     */
+    synchronized void close() throws IOException {
+        buffer.force();
+        file.close();
+    }
+
+    /**
+     * Converts a game id to its record number.
+     *
+     * @param id the id of the game
+     * @return the record number (counting from 0)
+     */
+    private int index(int id) {
+        if (id < 1 || id > count) throw new IllegalArgumentException("No game " + id);
+        return id - 1;
+    }
+
+    /**
+     * Gets where a record starts.
+     *
+     * @param index the record number (counting from 0)
+     * @return the offset of the record in the file
+     */
+    private static int offset(int index) {
+        return HEADER_BYTES + index * RECORD_BYTES;
+    }
+
+    /**
+     * Describes a result for printing to the console.
+     *
+     * @param result the result
+     * @return the description
+     */
+    static String describe(int result) {
+        if (result == 0) return "IN PROGRESS";
+        if (result == -1) return "DRAW";
+        return result == 1 ? "PLAYER ONE WINS" : "PLAYER TWO WINS";
+    }
+
+    /**
+     * Lists the archived games, shows one of them, or lists the duplicate games.
+     * <p>
+     * Usage (from the src folder):
+     * {@code java connectfour.GameArchive list [result]}, {@code java connectfour.GameArchive show <id>}
+     * or {@code java connectfour.GameArchive duplicates}
+     *
+     * @param args "list" optionally followed by the result (1, 2, -1 for draws or 0 for unfinished),
+     *             "show" followed by the id of a game, or "duplicates"
+     */
+    public static void main(String[] args) {
+        if (args.length == 0 || !(args[0].equals("list") || args[0].equals("duplicates")
+                || args[0].equals("show") && args.length > 1)) {
+            System.err.println("Usage: GameArchive list [result] | show <id> | duplicates");
+            return;
+        }
+        if (!new File(DEFAULT_PATH).exists()) {
+            System.err.println("No games archived yet.");
+            return;
+        }
+        GameArchive archive;
+        try {
+            archive = new GameArchive(DEFAULT_PATH);
+        } catch (IOException e) {
+            System.err.println("Couldn't open the game archive: " + e.getMessage());
+            return;
+        }
+        SimpleDateFormat format = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
+        if (args[0].equals("list")) {
+            int result = args.length > 1 ? Integer.parseInt(args[1]) : ANY_RESULT;
+            int[] ids = archive.find(result, Long.MIN_VALUE, Long.MAX_VALUE, Integer.MAX_VALUE);
+            for (int i = 0; i < ids.length; i++) {
+                System.out.println(ids[i] + "\t" + format.format(new Date(archive.getDate(ids[i]))) + "\t"
+                        + describe(archive.getResult(ids[i])) + "\t" + archive.getMoves(ids[i]).length + " moves");
+            }
+            System.out.println(ids.length + " of " + archive.size() + " games");
+        } else if (args[0].equals("duplicates")) {
+            int[] duplicates = archive.findDuplicates();
+            int found = 0;
+            for (int id = 1; id < duplicates.length; id++) {
+                if (duplicates[id] != 0) {
+                    System.out.println(id + "\tduplicates " + duplicates[id]);
+                    found++;
+                }
+            }
+            System.out.println(found + " of " + archive.size() + " games are duplicates");
+        } else {
+            int id = Integer.parseInt(args[1]);
+            if (id < 1 || id > archive.size()) {
+                System.err.println("No game " + id);
+                return;
+            }
+            int[] moves = archive.getMoves(id);
+            StringBuilder sequence = new StringBuilder();
+            for (int i = 0; i < moves.length; i++) {
+                sequence.append(moves[i] + 1);
+            }
+            System.out.println("GAME " + id + ", " + format.format(new Date(archive.getDate(id))) + ", "
+                    + describe(archive.getResult(id)) + ": " + sequence);
+            GameEngine game = new GameEngine();
+            archive.load(id, game);
+            int[][] board = game.toArray();
+            for (int y = 0; y < GameData.ROWS; y++) {
+                for (int x = 0; x < GameData.COLUMNS; x++) {
+                    System.out.print(board[y][x] + " ");
+                }
+                System.out.println();
+            }
+        }
+    }
+}
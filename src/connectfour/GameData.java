@@ -2,9 +2,13 @@ package connectfour;
 
 import java.awt.Color;
 import java.awt.Point;
+import java.io.IOException;
+import javax.swing.JOptionPane;
+import javax.swing.SwingUtilities;
 
 /**
- * The gameData class which stores all game data such as the board and the current player.
+ * The gameData class which connects the user interface to the game being shown,
+ * and stores the user interface's own data such as the player colors.
  *
  * @author elliot gorman
  */
@@ -20,49 +24,34 @@ final class GameData {
     static final int COLUMNS = 7;
 
     /**
-     * The location of the serialize file for the game.
+     * The game shown by the user interface, which owns the board, the current player and the winner.
      */
-    private static final String GAME_SAVE_PATH = "connectfour/save.connect4";
+    private static final GameEngine game = new GameEngine();
 
     /**
-     * The location of the serialize file for the second player's color.
+     * The journal every move is written to, or {@code null} until the game is recovered at startup.
      */
-    private static final String COLOR_TWO_SAVE_PATH = "connectfour/p2.color";
+    private static MoveJournal journal;
 
     /**
-     * The location of the serialize file for the first player's color.
+     * The archive every finished game is added to, or {@code null} if it isn't open.
      */
-    private static final String COLOR_ONE_SAVE_PATH = "connectfour/p1.color";
+    private static GameArchive archive;
 
     /**
-     * The game board, stores each move.
+     * The color for player one (the default until the settings are loaded).
      */
-    private static int[][] board = new int[ROWS][COLUMNS];
+    private static Color playerOneColor = CirclePanel.DEFAULT_PLAYER_ONE_COLOR;
 
     /**
-     * Current player.
+     * The color for player two (the default until the settings are loaded).
      */
-    private static int player = 1;
-
-    /**
-     * The color for player one.
-     */
-    private static Color playerOneColor = (Color) SerializeSystem.load(COLOR_ONE_SAVE_PATH, 1);
-
-    /**
-     * The color for player two.
-     */
-    private static Color playerTwoColor = (Color) SerializeSystem.load(COLOR_TWO_SAVE_PATH, 2);
-
-    /**
-     * The winner.
-     */
-    private static int winner = 0;
+    private static Color playerTwoColor = CirclePanel.DEFAULT_PLAYER_TWO_COLOR;
 
     /**
      * The winning pieces.
      */
-    private static Point[] winningPieces = new Point[4];
+    private static Point[] winningPieces = {new Point(), new Point(), new Point(), new Point()};
 
     /**
      * Hides the default public constructor.
@@ -71,6 +60,15 @@ final class GameData {
         throw new IllegalStateException("Utility Class");
     }
 
+    /**
+     * Getter for the game shown by the user interface.
+     *
+     * @return the game
+     */
+    static GameEngine getGame() {
+        return game;
+    }
+
     /**
      * Setter for a specific position on the board.
      *
@@ -78,10 +76,17 @@ final class GameData {
      * @param x the column
      */
     static void setBoard(int y, int x) {
-        //set the board at pos x, y to the current player
-        board[y][x] = player;
-        //changes player
-        setPlayer();
+        //drop the current player's piece in column x (it always lands on row y)
+        if (game.play(x) != -1) {
+            if (journal != null) {
+                journal.move(x);
+            }
+            if (game.getWinner() != 0) {
+                archiveGame();
+            }
+            //changes player
+            setPlayer();
+        }
     }
 
     /**
@@ -90,7 +95,7 @@ final class GameData {
      * @param b the board array
      */
     private static void setBoard(int[][] b) {
-        board = b;
+        game.load(b);
     }
 
     /**
@@ -131,8 +136,11 @@ final class GameData {
     static void setPlayerOneColor(Color color) {
         //set the color
         playerOneColor = color;
+        //the circles are drawn again in the new color
+        CirclePanel.clearSprites();
         //save
-        SerializeSystem.serialize(playerOneColor, COLOR_ONE_SAVE_PATH);
+        Settings.setColor(Settings.PLAYER_ONE_COLOR, playerOneColor);
+        journalColors();
         //change the display
         ConnectFour.activePlayerColor.setBackground(getCurrentPlayerColor());
     }
@@ -146,24 +154,55 @@ final class GameData {
     static void setPlayerTwoColor(Color color) {
         //set the color
         playerTwoColor = color;
+        //the circles are drawn again in the new color
+        CirclePanel.clearSprites();
         //save
-        SerializeSystem.serialize(playerTwoColor, COLOR_TWO_SAVE_PATH);
+        Settings.setColor(Settings.PLAYER_TWO_COLOR, playerTwoColor);
+        journalColors();
         ConnectFour.activePlayerColor.setBackground(getCurrentPlayerColor());
     }
 
+    /**
+     * Loads the settings in the background, then shows the saved player colors.
+     */
+    static void loadSettings() {
+        Settings.load(new Runnable() {
+            //@Override
+            public void run() {
+                playerOneColor = Settings.getColor(Settings.PLAYER_ONE_COLOR, playerOneColor);
+                playerTwoColor = Settings.getColor(Settings.PLAYER_TWO_COLOR, playerTwoColor);
+                journalColors();
+                CirclePanel.clearSprites();
+                //change the display
+                ConnectFour.activePlayerColor.setBackground(getCurrentPlayerColor());
+                GridPane.refresh();
+            }
+        });
+    }
+
+    /**
+     * Gives the journal the player colors, so its snapshot saves the game in them.
+     */
+    private static void journalColors() {
+        if (journal != null) {
+            journal.setColors(playerOneColor, playerTwoColor);
+        }
+    }
+
     /**
      * Gets the color of the current player.
      *
      * @return the color of the current player
      */
     static Color getCurrentPlayerColor() {
-        return player == 1 ? playerOneColor : playerTwoColor;
+        return game.getPlayer() == 1 ? playerOneColor : playerTwoColor;
     }
 
     /**
      * Prints board to the console.
      */
     static void printBoard() {
+        int[][] board = game.toArray();
         for (int i = 0; i < ROWS; i++) {
             for (int j = 0; j < COLUMNS; j++) {
                 System.out.print(board[i][j] + " ");
@@ -174,11 +213,11 @@ final class GameData {
     }
 
     /**
-     * Switches player after turns.
+     * Updates the current player display after turns (the game switches player itself),
+     * and once the computer stops thinking.
      */
-    private static void setPlayer() {
-        player = player == 1 ? 2 : 1;
-        ConnectFour.activePlayer.setText("PLAYER " + player + "'s TURN:");
+    static void setPlayer() {
+        ConnectFour.activePlayer.setText("PLAYER " + game.getPlayer() + "'s TURN:");
         ConnectFour.activePlayerColor.setBackground(getCurrentPlayerColor());
     }
 
@@ -188,7 +227,7 @@ final class GameData {
      * @param val the player (either 1 or 2)
      */
     static void setPlayer(int val) {
-        player = val;
+        game.setPlayer(val);
     }
 
     /**
@@ -197,37 +236,59 @@ final class GameData {
      * @return the current player
      */
     static int getPlayer() {
-        return player;
+        return game.getPlayer();
     }
 
     /**
      * Getter for the game board.
      *
-     * @return the game board
+     * @return a copy of the game board as an array
      */
     static int[][] getBoard() {
-        return board;
+        return game.toArray();
     }
 
     /**
-     * Saves the game.
+     * Saves the game on the background save writer, reporting back once it is written.
      */
     static void saveBoardData() {
-        System.out.println("SAVED\n");
-        SerializeSystem.serialize(board, GAME_SAVE_PATH);
+        GameSave save = new GameSave(game.getHistory(), game.getPlayer(), playerOneColor, playerTwoColor);
+        save.writeLater(GameSave.DEFAULT_PATH, new SaveListener() {
+            //@Override
+            public void saved(String path) {
+                System.out.println("SAVED\n");
+            }
+
+            //@Override
+            public void failed(String path, IOException e) {
+                System.err.println("Unexpected I/O Error. Keeping previous save.");
+                java.awt.Toolkit.getDefaultToolkit().beep();
+                JOptionPane.showMessageDialog(null, "The game couldn't be saved: " + e.getMessage(),
+                        "SAVE FAILED", JOptionPane.ERROR_MESSAGE);
+            }
+        });
     }
 
     /**
-     * Loads the game from memory.
+     * Loads the game from memory, replaying the saved moves.
      */
     static void loadBoard() {
-        Object s;
-        if ((s = (SerializeSystem.load(GAME_SAVE_PATH, 3))) != null) {
-            board = (int[][]) s;
-            //get the current player
-            player = nextPlayer();
+        //the computer's move would be for the old game
+        ComputerPlayer.cancel();
+        GameSave save = GameSave.load(playerOneColor, playerTwoColor);
+        if (save != null && save.restore(game)) {
+            //the colors are saved with the game
+            if (!save.getPlayerOneColor().equals(playerOneColor)) {
+                setPlayerOneColor(save.getPlayerOneColor());
+            }
+            if (!save.getPlayerTwoColor().equals(playerTwoColor)) {
+                setPlayerTwoColor(save.getPlayerTwoColor());
+            }
+            if (journal != null) {
+                journal.checkpoint(game);
+            }
             //update the display
-            ConnectFour.activePlayer.setText("PLAYER " + player + "'s TURN:");
+            ConnectFour.activePlayer.setText("PLAYER " + game.getPlayer() + "'s TURN:");
             ConnectFour.activePlayerColor.setBackground(getCurrentPlayerColor());
             System.out.println("LOADED\n");
         } else {
@@ -235,39 +296,89 @@ final class GameData {
         }
     }
 
+    /**
+     * Restores the game in progress when the program last closed (or crashed) from the move journal,
+     * then journals every move from now on. The journal is read on its own thread, and the game
+     * is restored once it has been read (unless a new game has been started meanwhile).
+     */
+    static void recoverGame() {
+        final MoveJournal recovering = new MoveJournal(MoveJournal.DEFAULT_PATH, MoveJournal.DEFAULT_SNAPSHOT_PATH);
+        recovering.setColors(playerOneColor, playerTwoColor);
+        recovering.recover(new JournalListener() {
+            //@Override
+            public void recovered(int[] moves) {
+                journal = recovering;
+                //the settings may have loaded meanwhile
+                journalColors();
+                if (game.getMoves() != 0) {
+                    //the user started playing before the journal was read, so journal their game instead
+                    journal.checkpoint(game);
+                    return;
+                }
+                //nothing to carry on from
+                if (moves.length == 0 || !game.replay(moves)) return;
+                if (game.getWinner() != 0) {
+                    //the game had finished, so start a new one
+                    reset();
+                    return;
+                }
+                setPlayer();
+                GridPane.refresh();
+                System.out.println("RECOVERED\n");
+            }
+        });
+    }
 
     /**
-     * Gets the next player after loading.
-     *
-     * @return the next player
-     */
-    private static int nextPlayer() {
-        int one = 0;
-        int two = 0;
-        for (int i = 0; i < ROWS; i++) {
-            for (int j = 0; j < COLUMNS; j++) {
-                if (board[i][j] == 1) {
-                    one++;
-                } else if (board[i][j] == 2) {
-                    two++;
+     * Opens the game archive on its own thread (mapping the file reads it), so every game
+     * is kept once it finishes. Games finished before it opens aren't archived.
+     */
+    static void openArchive() {
+        Thread opener = new Thread(new Runnable() {
+            //@Override
+            public void run() {
+                try {
+                    final GameArchive opened = new GameArchive(GameArchive.DEFAULT_PATH);
+                    SwingUtilities.invokeLater(new Runnable() {
+                        //@Override
+                        public void run() {
+                            archive = opened;
+                        }
+                    });
+                } catch (IOException e) {
+                    System.err.println("Couldn't open the game archive. Games won't be archived...");
                 }
             }
+        }, "Archive Opener");
+        opener.setDaemon(true);
+        opener.start();
+    }
+
+    /**
+     * Adds the game to the archive, if it is open.
+     */
+    private static void archiveGame() {
+        if (archive == null) return;
+        try {
+            //if the clock has gone back, the game is dated with the last one to keep the archive in date order
+            int id = archive.add(game, Math.max(System.currentTimeMillis(), archive.getLastDate()));
+            System.out.println("ARCHIVED AS GAME " + id + "\n");
+        } catch (IOException e) {
+            System.err.println("Unexpected I/O Error archiving the game.");
         }
-        //return 2 if more 1 pieces are present, else return 1;
-        return one > two ? 2 : 1;
     }
 
     /**
      * Resets the game to its original state.
      */
     static void reset() {
-        for (int i = 0; i < ROWS; i++) {
-            for (int j = 0; j < COLUMNS; j++) {
-                board[i][j] = 0;
-            }
+        //the computer's move would be for the old game
+        ComputerPlayer.cancel();
+        //resets the board, the player and the winner
+        game.reset();
+        if (journal != null) {
+            journal.reset();
         }
-        //resets the player
-        player = 1;
         //change the current player display
         ConnectFour.activePlayerColor.setBackground(GameData.getPlayerOneColor());
         ConnectFour.activePlayer.setText("PLAYER 1's TURN");
@@ -275,79 +386,20 @@ final class GameData {
     }
 
     /**
-     * Finds the player on the board at a given x and y.
-     *
-     * @param y the y coordinate
-     * @param x the x coordinate
-     * @return the player (if any) in that position
-     */
-    private static int pieceOnBoard(int y, int x) {
-        return (y < 0 || x < 0 || y >= 6 || x >= COLUMNS) ? 0 : board[y][x];
-    }
-
-    /**
-     * Scans the board for a winner.
+     * Gets the winner of the game, which is worked out as each move is played.
      *
      * @return the winner (if any) otherwise 0 for none, -1 for tie
      */
     static int isWinner() {
-        //Horizontal check
-        for (int y = 0; y < 6; y++) {
-            for (int x = 0; x < COLUMNS; x++) {
-                if (pieceOnBoard(y, x) != 0 && pieceOnBoard(y, x) == pieceOnBoard(y, x + 1)
-                        && pieceOnBoard(y, x) == pieceOnBoard(y, x + 2)
-                        && pieceOnBoard(y, x) == pieceOnBoard(y, x + 3)) {
-                    //Sets the winning pieces
-                    winningPieces[0] = new Point(x, y);
-                    winningPieces[1] = new Point(x + 1, y);
-                    winningPieces[2] = new Point(x + 2, y);
-                    winningPieces[3] = new Point(x + 3, y);
-                    return pieceOnBoard(y, x);
-                }
-            }
-        }
-
-        //Vertical check
-        for (int y = 0; y < ROWS; y++) {
-            for (int x = 0; x < COLUMNS; x++) {
-                if (pieceOnBoard(y, x) != 0 && pieceOnBoard(y, x) == pieceOnBoard(y + 1, x)
-                        && pieceOnBoard(y, x) == pieceOnBoard(y + 2, x)
-                        && pieceOnBoard(y, x) == pieceOnBoard(y + 3, x)) {
-                    //sets the winning pieces
-                    winningPieces[0] = new Point(x, y);
-                    winningPieces[1] = new Point(x, y + 1);
-                    winningPieces[2] = new Point(x, y + 2);
-                    winningPieces[3] = new Point(x, y + 3);
-                    return pieceOnBoard(y, x);
-                }
+        int w = game.getWinner();
+        if (w > 0) {
+            //sets the winning pieces
+            int[] cells = game.getWinningCells();
+            for (int i = 0; i < 4; i++) {
+                winningPieces[i].setLocation(BitBoard.column(cells[i]), BitBoard.row(cells[i]));
             }
         }
-
-        //Diagonal check
-        for (int y = 0; y < ROWS; y++) {
-            for (int x = 0; x < COLUMNS; x++) {
-                //diagonal search
-                for (int d = -1; d <= 1; d += 2)
-                    if (pieceOnBoard(y, x) != 0 && pieceOnBoard(y, x) == pieceOnBoard(y + d, x + 1)
-                            && pieceOnBoard(y, x) == pieceOnBoard(y + 2 * d, x + 2)
-                            && pieceOnBoard(y, x) == pieceOnBoard(y + 3 * d, x + 3)) {
-                        //sets the winning pieces
-                        winningPieces[0] = new Point(x, y);
-                        winningPieces[1] = new Point(x + 1, y + d);
-                        winningPieces[2] = new Point(x + 2, y + 2 * d);
-                        winningPieces[3] = new Point(x + 3, y + 3 * d);
-                        return pieceOnBoard(y, x);
-                    }
-            }
-        }
-
-        // if No one wins
-        for (int y = 0; y < ROWS; y++) {
-            for (int x = 0; x < COLUMNS; x++) {
-                if (pieceOnBoard(y, x) == 0) return 0;
-            }
-        }
-        return -1; //tie
+        return w;
     }
 
     /**
@@ -357,12 +409,7 @@ final class GameData {
      * @return the next available space (if any)
      */
     static int nextAvailableSpace(int col) {
-        for (int i = 5; i >= 0; i--) {
-            if (board[i][col] == 0) {
-                return i;
-            }
-        }
-        return -1;
+        return game.nextAvailableSpace(col);
     }
 
     /**
@@ -380,7 +427,7 @@ final class GameData {
      * @param winner the player
      */
     static void setWinner(int winner) {
-        GameData.winner = winner;
+        game.setWinner(winner);
     }
 
     /**
@@ -389,6 +436,6 @@ final class GameData {
      * @return the winner
      */
     static int getWinner() {
-        return winner;
+        return game.getWinner();
     }
 }
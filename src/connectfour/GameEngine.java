@@ -0,0 +1,286 @@
+package connectfour;
+
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * A single game of connect four: the board, whose turn it is, the winner and the winning line.
+ * Has no dependencies on the user interface, so any number of games can be played
+ * headless and at once. Every method is synchronized on the game itself, so one game
+ * may also be shared between threads.
+ *
+ * @author elliot gorman
+ */
+final class GameEngine {
+    /**
+     * The game board.
+     */
+    private final BitBoard board = new BitBoard();
+
+    /**
+     * Current player.
+     */
+    private int player = 1;
+
+    /**
+     * The winner (0 for none, -1 for a tie).
+     */
+    private int winner = 0;
+
+    /**
+     * The bit indices of the winning pieces.
+     */
+    private final int[] winningCells = new int[4];
+
+    /**
+     * The column of every move played so far, in order.
+     */
+    private final int[] history = new int[BitBoard.CELLS];
+
+    /**
+     * Instantiates a new game, with player one to move.
+     */
+    GameEngine() {
+    }
+
+    /**
+     * Drops the current player's piece in a column, then checks for a winner
+     * and switches player.
+     *
+     * @param col the column
+     * @return the row (counted from the top) the piece landed in, or -1 if the column is
+     * full or the game is already over
+     */
+    synchronized int play(int col) {
+        if (winner != 0 || col < 0 || col >= GameData.COLUMNS || !board.canPlay(col)) {
+            return -1;
+        }
+        history[board.getMoves()] = col;
+        int row = board.play(col, player);
+        //only the lines through the new piece need checking
+        if (board.winningLineThrough(board.getLastMove(), player, winningCells)) {
+            winner = player;
+        } else if (board.isFull()) {
+            winner = -1;
+        }
+        player = player == 1 ? 2 : 1;
+        return row;
+    }
+
+    /**
+     * Checks if a piece can still be dropped in a column.
+     *
+     * @param col the column
+     * @return {@code true} if the column isn't full
+     */
+    synchronized boolean canPlay(int col) {
+        return board.canPlay(col);
+    }
+
+    /**
+     * Gets the next available space in a column.
+     *
+     * @param col the column
+     * @return the row (counted from the top) of the next available space, or -1 if full
+     */
+    synchronized int nextAvailableSpace(int col) {
+        return board.nextAvailableSpace(col);
+    }
+
+    /**
+     * Finds the player on the board at a given x and y.
+     *
+     * @param y the row (counted from the top)
+     * @param x the column
+     * @return the player (if any) in that position
+     */
+    synchronized int get(int y, int x) {
+        return board.get(y, x);
+    }
+
+    /**
+     * Getter for the number of moves played.
+     *
+     * @return the move count
+     */
+    synchronized int getMoves() {
+        return board.getMoves();
+    }
+
+    /**
+     * Gets the key of the position, which its mirror image shares (see {@link BitBoard#getCanonicalKey()}).
+     *
+     * @return the canonical key
+     */
+    synchronized long getKey() {
+        return board.getCanonicalKey();
+    }
+
+    /**
+     * Getter for the current player.
+     *
+     * @return the current player
+     */
+    synchronized int getPlayer() {
+        return player;
+    }
+
+    /**
+     * Updates the player (used when saving and loading).
+     *
+     * @param player the player (either 1 or 2)
+     */
+    synchronized void setPlayer(int player) {
+        this.player = player;
+    }
+
+    /**
+     * Getter for the winner.
+     *
+     * @return the winner (if any) otherwise 0 for none, -1 for tie
+     */
+    synchronized int getWinner() {
+        return winner;
+    }
+
+    /**
+     * Sets the winner.
+     *
+     * @param winner the player, 0 for none or -1 for a tie
+     */
+    synchronized void setWinner(int winner) {
+        this.winner = winner;
+    }
+
+    /**
+     * Getter for the winning line.
+     *
+     * @return a copy of the bit indices of the four winning pieces
+     * (only meaningful once a player has won)
+     */
+    synchronized int[] getWinningCells() {
+        return winningCells.clone();
+    }
+
+    /**
+     * Getter for the moves played so far.
+     *
+     * @return a new array of the column of every move, in order
+     */
+    synchronized int[] getHistory() {
+        int[] moves = new int[board.getMoves()];
+        System.arraycopy(history, 0, moves, 0, moves.length);
+        return moves;
+    }
+
+    /**
+     * Replaces the game with the one reached by playing a sequence of moves from the start.
+     *
+     * @param moves the column of every move, in order
+     * @return {@code true} if every move was legal, otherwise the game is left reset
+     */
+    synchronized boolean replay(int[] moves) {
+        reset();
+        for (int i = 0; i < moves.length; i++) {
+            if (play(moves[i]) == -1) {
+                reset();
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Takes a copy of the board, for searches to play moves on.
+     *
+     * @return a new copy of the board
+     */
+    synchronized BitBoard copyBoard() {
+        return new BitBoard(board);
+    }
+
+    /**
+     * Creates an array view of the board.
+     *
+     * @return a new board array (rows counted from the top)
+     */
+    synchronized int[][] toArray() {
+        return board.toArray();
+    }
+
+    /**
+     * Replaces the board with the contents of a board array, working out whose turn
+     * it is from the number of pieces and scanning the whole board for a winner.
+     * The order the moves were played in is worked out too, so the move history stays complete.
+     *
+     * @param b the board array (rows counted from the top)
+     * @return {@code true} if the board could have been reached by a real game,
+     * otherwise the game is left unchanged
+     */
+    synchronized boolean load(int[][] b) {
+        BitBoard loaded = new BitBoard();
+        loaded.load(b);
+        int[] moves = new int[loaded.getMoves()];
+        //player 1 always moves first, so has the same number of pieces or one more
+        if (loaded.count(1) != (moves.length + 1) / 2 || loaded.count(2) != moves.length / 2
+                || !unplay(loaded, moves, new HashSet<Long>())) {
+            return false;
+        }
+        System.arraycopy(moves, 0, history, 0, moves.length);
+        board.load(b);
+        //player 2 moves if more 1 pieces are present, else player 1
+        player = board.count(1) > board.count(2) ? 2 : 1;
+        winner = 0;
+        for (int p = 1; p <= 2 && winner == 0; p++) {
+            if (board.winningLine(p, winningCells)) {
+                winner = p;
+            }
+        }
+        if (winner == 0 && board.isFull()) {
+            winner = -1;
+        }
+        return true;
+    }
+
+    /**
+     * Works out an order the pieces on a board could have been played in, by taking back
+     * the last player's top pieces one at a time (only the final move may make four in a row).
+     *
+     * @param board  the board (taken back, then restored)
+     * @param moves  the columns of the moves, filled in from the last
+     * @param failed the positions already found to have no order
+     * @return {@code true} if an order was found
+     */
+    private static boolean unplay(BitBoard board, int[] moves, Set<Long> failed) {
+        int n = board.getMoves();
+        if (n == 0) return true;
+        Long key = Long.valueOf(board.getPieces(1) + board.getMask());
+        if (failed.contains(key)) return false;
+
+        int last = n % 2 == 1 ? 1 : 2;
+        for (int col = 0; col < GameData.COLUMNS; col++) {
+            int top = board.nextAvailableSpace(col) + 1;
+            if (top >= GameData.ROWS || board.get(top, col) != last) continue;
+            board.undo(col);
+            if (!board.hasFour(1) && !board.hasFour(2)) {
+                moves[n - 1] = col;
+                if (unplay(board, moves, failed)) {
+                    board.play(col, last);
+                    return true;
+                }
+            }
+            board.play(col, last);
+        }
+        failed.add(key);
+        return false;
+    }
+
+    /**
+     * Resets the game to its original state.
+     */
+    synchronized void reset() {
+        board.clear();
+        player = 1;
+        winner = 0;
+    }
+}
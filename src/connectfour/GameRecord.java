@@ -0,0 +1,365 @@
+package connectfour;
+
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TimeZone;
+
+/**
+ * One game as a line of text, in the style of chess's PGN: tags in square brackets,
+ * then the moves (columns 1 to 7), then the result. For example:
+ * <pre>
+ * [PlayerOne "Ann"] [PlayerTwo "Bob"] [Date "2026-10-17T09:30:00Z"] 4455667 1-0
+ * </pre>
+ * The result is "1-0" if player one won, "0-1" if player two won, "1/2-1/2" for a draw
+ * or "*" for an unfinished game. Tag values are quoted, with backslashes before any
+ * quotes or backslashes inside them.
+ *
+ * @author elliot gorman
+ */
+final class GameRecord {
+    /**
+     * The tag for player one's name.
+     */
+    static final String PLAYER_ONE = "PlayerOne";
+
+    /**
+     * The tag for player two's name.
+     */
+    static final String PLAYER_TWO = "PlayerTwo";
+
+    /**
+     * The tag for when the game was played.
+     */
+    static final String DATE = "Date";
+
+    /**
+     * The format of the date tag (always in UTC).
+     */
+    static final String DATE_FORMAT = "yyyy-MM-dd'T'HH:mm:ss'Z'";
+
+    /**
+     * The results, by winner (see {@link GameEngine#getWinner()}) plus one.
+     */
+    private static final String[] RESULTS = {"1/2-1/2", "*", "1-0", "0-1"};
+
+    /**
+     * The column of every move, in order.
+     */
+    private final int[] moves;
+
+    /**
+     * The result (the winner, 0 for unfinished or -1 for a draw).
+     */
+    private final int result;
+
+    /**
+     * The tags, in order.
+     */
+    private final Map<String, String> tags;
+
+    /**
+     * Instantiates a new game record.
+     *
+     * @param moves  the column of every move, in order
+     * @param result the winner, 0 for unfinished or -1 for a draw
+     * @param tags   the tags, in order
+     */
+    GameRecord(int[] moves, int result, Map<String, String> tags) {
+        this.moves = moves.clone();
+        this.result = result;
+        this.tags = new LinkedHashMap<String, String>(tags);
+    }
+
+    /**
+     * Records a game.
+     *
+     * @param game      the game
+     * @param playerOne player one's name
+     * @param playerTwo player two's name
+     * @param date      when the game was played, in milliseconds since 1970
+     * @return the record
+     */
+    static GameRecord of(GameEngine game, String playerOne, String playerTwo, long date) {
+        Map<String, String> tags = new LinkedHashMap<String, String>();
+        tags.put(PLAYER_ONE, playerOne);
+        tags.put(PLAYER_TWO, playerTwo);
+        tags.put(DATE, dateFormat().format(new Date(date)));
+        return new GameRecord(game.getHistory(), game.getWinner(), tags);
+    }
+
+    /**
+     * Getter for the moves.
+     *
+     * @return a copy of the column of every move, in order
+     */
+    int[] getMoves() {
+        return moves.clone();
+    }
+
+    /**
+     * Getter for the result.
+     *
+     * @return the winner, 0 for unfinished or -1 for a draw
+     */
+    int getResult() {
+        return result;
+    }
+
+    /**
+     * Gets a tag.
+     *
+     * @param name the tag
+     * @return its value, or {@code null} if the record doesn't have it
+     */
+    String getTag(String name) {
+        return tags.get(name);
+    }
+
+    /**
+     * Gets when the game was played, from the date tag.
+     *
+     * @return the date in milliseconds since 1970, or -1 if there is no valid date
+     */
+    long getDate() {
+        String date = tags.get(DATE);
+        if (date == null) return -1;
+        try {
+            return dateFormat().parse(date).getTime();
+        } catch (ParseException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Replays the moves, checking each one is legal and the game ends with the recorded result.
+     *
+     * @param game the game to replay into
+     * @return {@code true} if the record is valid
+     */
+    boolean replay(GameEngine game) {
+        return game.replay(moves) && game.getWinner() == result;
+    }
+
+    /**
+     * Writes the record as a line of text (without the line break).
+     *
+     * @param out where to write it
+     * @throws IOException if it can't be written
+     */
+    void write(Appendable out) throws IOException {
+        Iterator<Map.Entry<String, String>> entries = tags.entrySet().iterator();
+        while (entries.hasNext()) {
+            Map.Entry<String, String> tag = entries.next();
+            out.append('[').append(tag.getKey()).append(" \"");
+            String value = tag.getValue();
+            for (int i = 0; i < value.length(); i++) {
+                char c = value.charAt(i);
+                if (c == '"' || c == '\\') {
+                    out.append('\\');
+                }
+                //line breaks would split the record
+                out.append(c == '\n' || c == '\r' ? ' ' : c);
+            }
+            out.append("\"] ");
+        }
+        for (int i = 0; i < moves.length; i++) {
+            out.append((char) ('1' + moves[i]));
+        }
+        if (moves.length > 0) {
+            out.append(' ');
+        }
+        out.append(RESULTS[result + 1]);
+    }
+
+    /**
+     * Writes the record as a line of text.
+     *
+     * @return the line (without the line break)
+     */
+    //@Override
+    public String toString() {
+        StringBuilder line = new StringBuilder();
+        try {
+            write(line);
+        } catch (IOException e) {
+            //a string builder never fails to write
+            throw new IllegalStateException(e);
+        }
+        return line.toString();
+    }
+
+    /**
+     * Reads a record from a line of text. The moves aren't checked (see {@link #replay(GameEngine)}).
+     *
+     * @param line the line (without the line break)
+     * @return the record
+     * @throws ParseException if the line isn't a record, with the offset of the problem
+     */
+    static GameRecord parse(String line) throws ParseException {
+        Map<String, String> tags = new LinkedHashMap<String, String>();
+        int i = skipSpaces(line, 0);
+        //the tags
+        while (i < line.length() && line.charAt(i) == '[') {
+            int nameEnd = line.indexOf(' ', i);
+            if (nameEnd < 0 || nameEnd + 1 >= line.length() || line.charAt(nameEnd + 1) != '"') {
+                throw new ParseException("Expected a tag name then a quoted value", i);
+            }
+            StringBuilder value = new StringBuilder();
+            int j = nameEnd + 2;
+            while (j < line.length() && line.charAt(j) != '"') {
+                if (line.charAt(j) == '\\' && j + 1 < line.length()) {
+                    j++;
+                }
+                value.append(line.charAt(j++));
+            }
+            if (j + 1 >= line.length() || line.charAt(j + 1) != ']') {
+                throw new ParseException("Unterminated tag", i);
+            }
+            tags.put(line.substring(i + 1, nameEnd), value.toString());
+            i = skipSpaces(line, j + 2);
+        }
+
+        //the moves
+        int[] moves = new int[BitBoard.CELLS];
+        int count = 0;
+        //a digit followed by '-' or '/' starts the result
+        while (i < line.length() && line.charAt(i) >= '1' && line.charAt(i) <= '0' + GameData.COLUMNS
+                && (i + 1 == line.length() || line.charAt(i + 1) != '-' && line.charAt(i + 1) != '/')) {
+            if (count == moves.length) {
+                throw new ParseException("Too many moves", i);
+            }
+            moves[count++] = line.charAt(i++) - '1';
+        }
+        i = skipSpaces(line, i);
+
+        //the result
+        String token = line.substring(i).trim();
+        int result = -2;
+        for (int r = 0; r < RESULTS.length; r++) {
+            if (RESULTS[r].equals(token)) {
+                result = r - 1;
+            }
+        }
+        if (result == -2) {
+            throw new ParseException("Expected the result (1-0, 0-1, 1/2-1/2 or *)", i);
+        }
+
+        int[] columns = new int[count];
+        System.arraycopy(moves, 0, columns, 0, count);
+        return new GameRecord(columns, result, tags);
+    }
+
+    /**
+     * Skips spaces.
+     *
+     * @param line  the line
+     * @param start where to start
+     * @return the index of the first character after the spaces
+     */
+    private static int skipSpaces(String line, int start) {
+        while (start < line.length() && line.charAt(start) == ' ') {
+            start++;
+        }
+        return start;
+    }
+
+    /**
+     * Creates the format of the date tag (formats aren't thread safe, so each use gets its own).
+     *
+     * @return the date format, in UTC
+     */
+    private static SimpleDateFormat dateFormat() {
+        SimpleDateFormat format = new SimpleDateFormat(DATE_FORMAT);
+        format.setTimeZone(TimeZone.getTimeZone("UTC"));
+        return format;
+    }
+
+    /**
+     * Checks a file of game records, or imports it into or exports it from the game archive.
+     * The archive keeps each game's moves, result and date, but not the player names (exported as "?"),
+     * and only imports games dated on or after its last game (the others are reported).
+     * <p>
+     * Usage (from the src folder):
+     * {@code java connectfour.GameRecord check|import|export <file>}
+     *
+     * @param args "check", "import" or "export", then the file of game records
+     */
+    public static void main(String[] args) {
+        if (args.length < 2 || !(args[0].equals("check") || args[0].equals("import") || args[0].equals("export"))) {
+            System.err.println("Usage: GameRecord check|import|export <file>");
+            return;
+        }
+        long start = System.nanoTime();
+        try {
+            if (args[0].equals("export")) {
+                GameArchive archive = new GameArchive(GameArchive.DEFAULT_PATH);
+                GameRecordWriter writer = new GameRecordWriter(
+                        new OutputStreamWriter(new FileOutputStream(args[1]), "UTF-8"));
+                try {
+                    GameEngine game = new GameEngine();
+                    for (int id = 1; id <= archive.size(); id++) {
+                        archive.load(id, game);
+                        //the archive doesn't keep player names, so they are unknown
+                        writer.write(of(game, "?", "?", archive.getDate(id)));
+                    }
+                } finally {
+                    writer.close();
+                    archive.close();
+                }
+                System.out.println("Exported " + writer.getRecords() + " games in "
+                        + (System.nanoTime() - start) / 1000000 + " ms");
+                return;
+            }
+
+            GameArchive archive = args[0].equals("import") ? new GameArchive(GameArchive.DEFAULT_PATH) : null;
+            GameRecordReader reader = new GameRecordReader(
+                    new InputStreamReader(new FileInputStream(args[1]), "UTF-8"));
+            long[] results = new long[RESULTS.length];
+            long valid = 0;
+            long outOfOrder = 0;
+            try {
+                GameRecord record;
+                while ((record = reader.next()) != null) {
+                    if (archive != null) {
+                        long date = record.getDate();
+                        if (date == -1) {
+                            //undated games are dated now
+                            date = Math.max(System.currentTimeMillis(), archive.getLastDate());
+                        } else if (date < archive.getLastDate()) {
+                            //the archive can only add games in date order, and dates are never changed
+                            if (++outOfOrder <= GameRecordReader.MAX_REPORTED) {
+                                System.err.println("Not importing line " + reader.getLines() + ": dated "
+                                        + record.getTag(DATE) + ", before the last archived game");
+                            }
+                            continue;
+                        }
+                        archive.add(reader.getGame(), date);
+                    }
+                    valid++;
+                    results[record.getResult() + 1]++;
+                }
+            } finally {
+                reader.close();
+                if (archive != null) {
+                    archive.close();
+                }
+            }
+            System.out.println((archive != null ? "Imported " : "Checked ") + valid + " games ("
+                    + results[2] + " " + RESULTS[2] + ", " + results[3] + " " + RESULTS[3] + ", "
+                    + results[0] + " " + RESULTS[0] + ", " + results[1] + " " + RESULTS[1] + "), skipped "
+                    + reader.getSkipped() + (outOfOrder > 0 ? ", not imported " + outOfOrder
+                    + " dated before the last archived game" : "") + ", in " + (System.nanoTime() - start) / 1000000 + " ms");
+        } catch (IOException e) {
+            System.err.println("Unexpected I/O Error: " + e.getMessage());
+        }
+    }
+}
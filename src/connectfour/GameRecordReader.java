@@ -0,0 +1,119 @@
+package connectfour;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.text.ParseException;
+
+/**
+ * Reads game records (see {@link GameRecord}) one line at a time, so files of any size are read
+ * in constant memory. Every record is replayed through a {@link GameEngine}, and records which
+ * can't be read, have an illegal move or don't end with their recorded result are skipped.
+ * Blank lines and lines starting with '#' are ignored.
+ *
+ * @author elliot gorman
+ */
+final class GameRecordReader {
+    /**
+     * The most skipped records reported to the console, so a bad file doesn't flood it.
+     */
+    static final int MAX_REPORTED = 20;
+
+    /**
+     * The text being read.
+     */
+    private final BufferedReader in;
+
+    /**
+     * The game of the last record read.
+     */
+    private final GameEngine game = new GameEngine();
+
+    /**
+     * The number of lines read.
+     */
+    private long lines;
+
+    /**
+     * The number of records skipped.
+     */
+    private long skipped;
+
+    /**
+     * Instantiates a new reader.
+     *
+     * @param in the text to read
+     */
+    GameRecordReader(Reader in) {
+        this.in = in instanceof BufferedReader ? (BufferedReader) in : new BufferedReader(in);
+    }
+
+    /**
+     * Reads the next valid record.
+     *
+     * @return the record, or {@code null} at the end of the text
+     * @throws IOException if the text can't be read
+     */
+    GameRecord next() throws IOException {
+        String line;
+        while ((line = in.readLine()) != null) {
+            lines++;
+            if (line.trim().length() == 0 || line.charAt(0) == '#') continue;
+            try {
+                GameRecord record = GameRecord.parse(line);
+                if (record.replay(game)) return record;
+                skip("illegal move or wrong result");
+            } catch (ParseException e) {
+                skip(e.getMessage() + " at column " + (e.getErrorOffset() + 1));
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Counts a skipped record, reporting it to the console.
+     *
+     * @param reason why the record was skipped
+     */
+    private void skip(String reason) {
+        if (++skipped <= MAX_REPORTED) {
+            System.err.println("Skipping line " + lines + ": " + reason);
+        }
+    }
+
+    /**
+     * Getter for the game of the last record read, replayed to its end.
+     *
+     * @return the game (reused for every record)
+     */
+    GameEngine getGame() {
+        return game;
+    }
+
+    /**
+     * Getter for the number of lines read.
+     *
+     * @return the line count
+     */
+    long getLines() {
+        return lines;
+    }
+
+    /**
+     * Getter for the number of records skipped.
+     *
+     * @return the skipped count
+     */
+    long getSkipped() {
+        return skipped;
+    }
+
+    /**
+     * Closes the text being read.
+     *
+     * @throws IOException if it can't be closed
+     */
+    void close() throws IOException {
+        in.close();
+    }
+}
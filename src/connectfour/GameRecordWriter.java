@@ -0,0 +1,62 @@
+package connectfour;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Writes game records (see {@link GameRecord}), one per line.
+ *
+ * @author elliot gorman
+ */
+final class GameRecordWriter {
+    /**
+     * The text being written.
+     */
+    private final BufferedWriter out;
+
+    /**
+     * The number of records written.
+     */
+    private long records;
+
+    /**
+     * Instantiates a new writer.
+     *
+     * @param out the text to write to
+     */
+    GameRecordWriter(Writer out) {
+        this.out = out instanceof BufferedWriter ? (BufferedWriter) out : new BufferedWriter(out);
+    }
+
+    /**
+     * Writes a record.
+     *
+     * @param record the record
+     * @throws IOException if it can't be written
+     */
+    void write(GameRecord record) throws IOException {
+        record.write(out);
+        //always the same line break, so files are the same on every system
+        out.write('\n');
+        records++;
+    }
+
+    /**
+     * Getter for the number of records written.
+     *
+     * @return the record count
+     */
+    long getRecords() {
+        return records;
+    }
+
+    /**
+     * Writes anything buffered, then closes the text being written.
+     *
+     * @throws IOException if it can't be written or closed
+     */
+    void close() throws IOException {
+        out.close();
+    }
+}
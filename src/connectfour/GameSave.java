@@ -0,0 +1,330 @@
+package connectfour;
+
+import java.awt.Color;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.zip.CRC32;
+
+/**
+ * A saved game in the compact binary save format: the moves played, whose turn it is and
+ * the player colors, with a checksum. A full board takes 40 bytes.
+ * <p>
+ * File layout: the magic number (int), version (byte), player to move (byte), player one and
+ * player two colors (ARGB ints), move count (byte), the moves packed two columns to a byte
+ * (high four bits first), then a CRC32 of everything before it (int).
+ *
+ * @author elliot gorman
+ */
+final class GameSave {
+    /**
+     * The number identifying a save file ("C4SV").
+     */
+    static final int MAGIC = 0x43345356;
+
+    /**
+     * The current file version.
+     */
+    static final int VERSION = 1;
+
+    /**
+     * The location of the saved game.
+     */
+    static final String DEFAULT_PATH = "connectfour/save.c4";
+
+    /**
+     * The location of the saved game written by older versions.
+     */
+    static final String LEGACY_PATH = "connectfour/save.connect4";
+
+    /**
+     * The size of a save with no moves, in bytes.
+     */
+    static final int HEADER_BYTES = 15;
+
+    /**
+     * The size of the checksum, in bytes.
+     */
+    static final int CHECKSUM_BYTES = 4;
+
+    /**
+     * The size of the largest save, in bytes.
+     */
+    static final int MAX_BYTES = HEADER_BYTES + (BitBoard.CELLS + 1) / 2 + CHECKSUM_BYTES;
+
+    /**
+     * The column of every move, in order.
+     */
+    private final int[] moves;
+
+    /**
+     * The player to move.
+     */
+    private final int player;
+
+    /**
+     * The color for player one.
+     */
+    private final Color playerOneColor;
+
+    /**
+     * The color for player two.
+     */
+    private final Color playerTwoColor;
+
+    /**
+     * Instantiates a new saved game.
+     *
+     * @param moves          the column of every move, in order
+     * @param player         the player to move (either 1 or 2)
+     * @param playerOneColor the color for player one
+     * @param playerTwoColor the color for player two
+     */
+    GameSave(int[] moves, int player, Color playerOneColor, Color playerTwoColor) {
+        this.moves = moves.clone();
+        this.player = player;
+        this.playerOneColor = playerOneColor;
+        this.playerTwoColor = playerTwoColor;
+    }
+
+    /**
+     * Getter for the moves.
+     *
+     * @return a copy of the column of every move, in order
+     */
+    int[] getMoves() {
+        return moves.clone();
+    }
+
+    /**
+     * Getter for the player to move.
+     *
+     * @return the player (either 1 or 2)
+     */
+    int getPlayer() {
+        return player;
+    }
+
+    /**
+     * Getter for player one's color.
+     *
+     * @return the first player's color
+     */
+    Color getPlayerOneColor() {
+        return playerOneColor;
+    }
+
+    /**
+     * Getter for player two's color.
+     *
+     * @return the second player's color
+     */
+    Color getPlayerTwoColor() {
+        return playerTwoColor;
+    }
+
+    /**
+     * Restores the saved game into a game.
+     *
+     * @param game the game to replace
+     * @return {@code true} if the moves were all legal and leave the saved player to move,
+     * otherwise the game is left unchanged
+     */
+    boolean restore(GameEngine game) {
+        //the moves decide who is to move, so a save which disagrees is damaged
+        if (player != moves.length % 2 + 1) return false;
+        //check the moves first, so an invalid save leaves the game alone
+        if (!new GameEngine().replay(moves)) return false;
+        return game.replay(moves);
+    }
+
+    /**
+     * Encodes the save in the binary save format.
+     *
+     * @return the bytes of the save, checksum included
+     */
+    byte[] toBytes() {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(MAX_BYTES);
+        DataOutputStream out = new DataOutputStream(bytes);
+        try {
+            out.writeInt(MAGIC);
+            out.writeByte(VERSION);
+            out.writeByte(player);
+            out.writeInt(playerOneColor.getRGB());
+            out.writeInt(playerTwoColor.getRGB());
+            out.writeByte(moves.length);
+            for (int i = 0; i < moves.length; i += 2) {
+                //two columns to a byte, the last low four bits unused for an odd count
+                int second = i + 1 < moves.length ? moves[i + 1] : 0;
+                out.writeByte(moves[i] << 4 | second);
+            }
+            CRC32 crc = new CRC32();
+            crc.update(bytes.toByteArray());
+            out.writeInt((int) crc.getValue());
+        } catch (IOException e) {
+            //a byte array never fails to write
+            throw new IllegalStateException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Decodes a save in the binary save format.
+     *
+     * @param buffer the bytes of the save, from the buffer's position (which is moved past the save)
+     * @return the save, or {@code null} if the bytes aren't a valid save
+     */
+    static GameSave fromBytes(ByteBuffer buffer) {
+        int start = buffer.position();
+        int length = buffer.remaining();
+        if (length < HEADER_BYTES + CHECKSUM_BYTES || buffer.getInt(start) != MAGIC
+                || buffer.get(start + 4) != VERSION) {
+            return null;
+        }
+        int count = buffer.get(start + 14) & 0xFF;
+        int end = start + HEADER_BYTES + (count + 1) / 2;
+        if (count > BitBoard.CELLS || length < end - start + CHECKSUM_BYTES) return null;
+
+        //check nothing was changed or cut short
+        CRC32 crc = new CRC32();
+        for (int i = start; i < end; i++) {
+            crc.update(buffer.get(i));
+        }
+        if ((int) crc.getValue() != buffer.getInt(end)) return null;
+
+        int player = buffer.get(start + 5);
+        if (player != 1 && player != 2) return null;
+        int[] moves = new int[count];
+        for (int i = 0; i < count; i++) {
+            int b = buffer.get(start + HEADER_BYTES + i / 2);
+            moves[i] = i % 2 == 0 ? b >> 4 & 0xF : b & 0xF;
+        }
+        buffer.position(end + CHECKSUM_BYTES);
+        return new GameSave(moves, player, new Color(buffer.getInt(start + 6), true),
+                new Color(buffer.getInt(start + 10), true));
+    }
+
+    /**
+     * Writes the save to a file, replacing the old file only once the new one is safely written.
+     *
+     * @param path the filepath to save to
+     * @return {@code true} if the save was written
+     */
+    boolean write(String path) {
+        try {
+            SaveWriter.write(path, toBytes());
+            return true;
+        } catch (IOException e) {
+            System.err.println("Unexpected I/O Error. Keeping previous save.");
+            return false;
+        }
+    }
+
+    /**
+     * Writes the save to a file on the background save writer.
+     *
+     * @param path     the filepath to save to
+     * @param listener told once the save is written or has failed
+     */
+    void writeLater(String path, SaveListener listener) {
+        SaveWriter.writeLater(path, toBytes(), listener);
+    }
+
+    /**
+     * Reads a save from a file.
+     *
+     * @param path the filepath
+     * @return the save, or {@code null} if the file is missing or isn't a valid save
+     */
+    static GameSave read(String path) {
+        if (!new File(path).exists()) return null;
+        FileInputStream file = null;
+        try {
+            file = new FileInputStream(path);
+            FileChannel channel = file.getChannel();
+            if (channel.size() > MAX_BYTES) {
+                System.err.println("Couldn't properly parse the saved game.");
+                return null;
+            }
+            ByteBuffer buffer = ByteBuffer.allocate((int) channel.size());
+            while (buffer.hasRemaining() && channel.read(buffer) != -1) {
+                //keep reading until the buffer is full
+            }
+            buffer.flip();
+            GameSave save = fromBytes(buffer);
+            if (save == null || buffer.hasRemaining()) {
+                System.err.println("Couldn't properly parse the saved game.");
+                return null;
+            }
+            return save;
+        } catch (IOException e) {
+            System.err.println("Unexpected I/O Error loading the saved game.");
+            return null;
+        } finally {
+            try {
+                if (file != null) {
+                    file.close();
+                }
+            } catch (IOException e) {
+                System.err.println("Unexpected I/O Error loading the saved game.");
+            }
+        }
+    }
+
+    /**
+     * Imports a save written by older versions, which serialized the board array.
+     * The order the moves were played in is worked out from the board.
+     *
+     * @param path           the filepath
+     * @param playerOneColor the color for player one (older saves have no colors)
+     * @param playerTwoColor the color for player two
+     * @return the save, or {@code null} if the file is missing or isn't a valid game
+     */
+    static GameSave importLegacy(String path, Color playerOneColor, Color playerTwoColor) {
+        if (!new File(path).exists()) return null;
+        Object s = SerializeSystem.load(path, 3);
+        if (!isBoardArray(s)) {
+            System.err.println("Couldn't properly parse the old saved game.");
+            return null;
+        }
+        GameEngine game = new GameEngine();
+        if (!game.load((int[][]) s)) {
+            System.err.println("Couldn't properly parse the old saved game.");
+            return null;
+        }
+        return new GameSave(game.getHistory(), game.getPlayer(), playerOneColor, playerTwoColor);
+    }
+
+    /**
+     * Checks an object read from an older save is a board array of the right size.
+     *
+     * @param s the object
+     * @return {@code true} if it is a board array
+     */
+    private static boolean isBoardArray(Object s) {
+        if (!(s instanceof int[][]) || ((int[][]) s).length != GameData.ROWS) return false;
+        int[][] board = (int[][]) s;
+        for (int y = 0; y < board.length; y++) {
+            if (board[y] == null || board[y].length != GameData.COLUMNS) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Reads the saved game, importing the one written by older versions if there is no newer save.
+     *
+     * @param playerOneColor the color for player one, if the save is an older one
+     * @param playerTwoColor the color for player two, if the save is an older one
+     * @return the save, or {@code null} if there is no valid save
+     */
+    static GameSave load(Color playerOneColor, Color playerTwoColor) {
+        if (new File(DEFAULT_PATH).exists()) {
+            return read(DEFAULT_PATH);
+        }
+        return importLegacy(LEGACY_PATH, playerOneColor, playerTwoColor);
+    }
+}
@@ -0,0 +1,370 @@
+package connectfour;
+
+import java.util.Random;
+
+/**
+ * A store for a very large number of games, packed into one {@code long[]} with no object
+ * per game, so holding a million idle games costs 24 MB and nothing for the garbage collector
+ * to trace.
+ * <p>
+ * Each game is three longs: player one's pieces and the occupied cells (as bitboards, see
+ * {@link BitBoard}), then the move count (bits 0 to 5), player to move (bits 6 and 7),
+ * winner (bits 8 to 10: 0 for none, the player, or 3 for a tie), an in use flag (bit 11) and a
+ * generation (bits 32 to 63). Games are reached through handles of the generation and the slot,
+ * so a handle to a released game can't reach the game that reuses its slot. Released slots are
+ * kept in a free-list, threaded through their first long.
+ * <p>
+ * The store isn't thread safe: share it between threads under a lock.
+ *
+ * @author elliot gorman
+ */
+final class GameStore {
+    /**
+     * The number of longs in each game.
+     */
+    static final int RECORD_LONGS = 3;
+
+    /**
+     * The bits of the move count.
+     */
+    private static final long MOVES_MASK = 0x3F;
+
+    /**
+     * The position of the player to move.
+     */
+    private static final int PLAYER_SHIFT = 6;
+
+    /**
+     * The position of the winner.
+     */
+    private static final int WINNER_SHIFT = 8;
+
+    /**
+     * The in use flag.
+     */
+    private static final long IN_USE = 1L << 11;
+
+    /**
+     * The position of the generation.
+     */
+    private static final int GENERATION_SHIFT = 32;
+
+    /**
+     * The winner stored for a tie.
+     */
+    private static final int TIE = 3;
+
+    /**
+     * The most games a store can hold.
+     */
+    static final int MAX_GAMES = Integer.MAX_VALUE / RECORD_LONGS;
+
+    /**
+     * The games.
+     */
+    private long[] slab;
+
+    /**
+     * The number of slots ever used.
+     */
+    private int used;
+
+    /**
+     * The number of games in the store.
+     */
+    private int size;
+
+    /**
+     * The first released slot, or -1 if none.
+     */
+    private int free = -1;
+
+    /**
+     * Instantiates a new store.
+     *
+     * @param capacity the number of games to make room for (the store grows if needed)
+     */
+    GameStore(int capacity) {
+        slab = new long[Math.max(1, capacity) * RECORD_LONGS];
+    }
+
+    /**
+     * Creates a new game, with player one to move.
+     *
+     * @return the handle of the game
+     */
+    long create() {
+        int slot;
+        if (free != -1) {
+            slot = free;
+            free = (int) slab[slot * RECORD_LONGS];
+        } else {
+            if (used == MAX_GAMES) throw new IllegalStateException("The game store is full");
+            if ((used + 1) * RECORD_LONGS > slab.length) {
+                long[] bigger = new long[(int) Math.min((long) MAX_GAMES * RECORD_LONGS, 2L * slab.length)];
+                System.arraycopy(slab, 0, bigger, 0, used * RECORD_LONGS);
+                slab = bigger;
+            }
+            slot = used++;
+        }
+        int base = slot * RECORD_LONGS;
+        //a reused slot keeps counting its generations
+        long generation = slab[base + 2] >>> GENERATION_SHIFT;
+        slab[base] = 0;
+        slab[base + 1] = 0;
+        slab[base + 2] = generation << GENERATION_SHIFT | IN_USE | 1L << PLAYER_SHIFT;
+        size++;
+        return generation << GENERATION_SHIFT | slot;
+    }
+
+    /**
+     * Releases a game, so its slot can be reused.
+     *
+     * @param handle the handle of the game
+     */
+    void release(long handle) {
+        int base = base(handle);
+        long generation = (slab[base + 2] >>> GENERATION_SHIFT) + 1;
+        slab[base + 2] = (generation & 0xFFFFFFFFL) << GENERATION_SHIFT;
+        slab[base] = free;
+        slab[base + 1] = 0;
+        free = base / RECORD_LONGS;
+        size--;
+    }
+
+    /**
+     * Drops the current player's piece in a column, then checks for a winner and switches player.
+     *
+     * @param handle the handle of the game
+     * @param col    the column
+     * @return the row (counted from the top) the piece landed in, or -1 if the column is
+     * full or the game is already over
+     */
+    int play(long handle, int col) {
+        int base = base(handle);
+        long meta = slab[base + 2];
+        long mask = slab[base + 1];
+        if ((meta >>> WINNER_SHIFT & 7) != 0 || col < 0 || col >= GameData.COLUMNS || !hasRoom(mask, col)) {
+            return -1;
+        }
+        //the lowest empty cell of the column
+        long bit = (mask + (1L << col * BitBoard.COLUMN_BITS)) & column(col);
+        int player = (int) (meta >>> PLAYER_SHIFT & 3);
+        long pieces = player == 1 ? slab[base] | bit : mask & ~slab[base] | bit;
+        mask |= bit;
+        int moves = (int) (meta & MOVES_MASK) + 1;
+
+        int winner = 0;
+        if (BitBoard.hasFour(pieces)) {
+            winner = player;
+        } else if (moves == BitBoard.CELLS) {
+            winner = TIE;
+        }
+        if (player == 1) {
+            slab[base] = pieces;
+        }
+        slab[base + 1] = mask;
+        slab[base + 2] = meta & ~(MOVES_MASK | 3L << PLAYER_SHIFT | 7L << WINNER_SHIFT) | moves
+                | (long) (3 - player) << PLAYER_SHIFT | (long) winner << WINNER_SHIFT;
+        return GameData.ROWS - 1 - Long.numberOfTrailingZeros(bit) % BitBoard.COLUMN_BITS;
+    }
+
+    /**
+     * Checks if a piece can still be dropped in a column.
+     *
+     * @param handle the handle of the game
+     * @param col    the column
+     * @return {@code true} if the column isn't full
+     */
+    boolean canPlay(long handle, int col) {
+        return hasRoom(slab[base(handle) + 1], col);
+    }
+
+    /**
+     * Checks if a column has room, from the occupied cells.
+     *
+     * @param mask the occupied cells
+     * @param col  the column
+     * @return {@code true} if the column's top cell is empty
+     */
+    private static boolean hasRoom(long mask, int col) {
+        return (mask & 1L << (col * BitBoard.COLUMN_BITS + GameData.ROWS - 1)) == 0;
+    }
+
+    /**
+     * Builds the mask of a whole column.
+     *
+     * @param col the column
+     * @return the column's cells
+     */
+    private static long column(int col) {
+        return ((1L << GameData.ROWS) - 1) << (col * BitBoard.COLUMN_BITS);
+    }
+
+    /**
+     * Finds the player on the board at a given x and y.
+     *
+     * @param handle the handle of the game
+     * @param y      the row (counted from the top)
+     * @param x      the column
+     * @return the player (if any) in that position
+     */
+    int get(long handle, int y, int x) {
+        int base = base(handle);
+        long bit = 1L << BitBoard.bitIndex(y, x);
+        if ((slab[base + 1] & bit) == 0) return 0;
+        return (slab[base] & bit) != 0 ? 1 : 2;
+    }
+
+    /**
+     * Gets the number of moves played in a game.
+     *
+     * @param handle the handle of the game
+     * @return the move count
+     */
+    int getMoves(long handle) {
+        return (int) (slab[base(handle) + 2] & MOVES_MASK);
+    }
+
+    /**
+     * Gets the player to move in a game.
+     *
+     * @param handle the handle of the game
+     * @return the player (either 1 or 2)
+     */
+    int getPlayer(long handle) {
+        return (int) (slab[base(handle) + 2] >>> PLAYER_SHIFT & 3);
+    }
+
+    /**
+     * Gets the winner of a game.
+     *
+     * @param handle the handle of the game
+     * @return the winner (if any) otherwise 0 for none, -1 for tie
+     */
+    int getWinner(long handle) {
+        int winner = (int) (slab[base(handle) + 2] >>> WINNER_SHIFT & 7);
+        return winner == TIE ? -1 : winner;
+    }
+
+    /**
+     * Copies a game's board, for searches to play moves on.
+     *
+     * @param handle the handle of the game
+     * @return a new board array (rows counted from the top)
+     */
+    int[][] toArray(long handle) {
+        int[][] board = new int[GameData.ROWS][GameData.COLUMNS];
+        for (int y = 0; y < GameData.ROWS; y++) {
+            for (int x = 0; x < GameData.COLUMNS; x++) {
+                board[y][x] = get(handle, y, x);
+            }
+        }
+        return board;
+    }
+
+    /**
+     * Getter for the number of games in the store.
+     *
+     * @return the game count
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * Getter for the memory the store takes up.
+     *
+     * @return the size of the slab, in bytes
+     */
+    long getBytes() {
+        return (long) slab.length * 8;
+    }
+
+    /**
+     * Checks a handle, finding its game.
+     *
+     * @param handle the handle of the game
+     * @return the index of the game's first long
+     */
+    private int base(long handle) {
+        int slot = (int) handle;
+        if (slot < 0 || slot >= used) throw new IllegalArgumentException("No game " + handle);
+        int base = slot * RECORD_LONGS;
+        long meta = slab[base + 2];
+        if ((meta & IN_USE) == 0 || meta >>> GENERATION_SHIFT != handle >>> GENERATION_SHIFT) {
+            throw new IllegalArgumentException("Released game " + handle);
+        }
+        return base;
+    }
+
+    /**
+     * Times holding and playing a million games, against the same games as game engines.
+     * <p>
+     * Usage (from the src folder):
+     * {@code java connectfour.GameStore [games]}
+     *
+     * @param args the number of games (optional)
+     */
+    public static void main(String[] args) {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 1000000;
+
+        long before = usedMemory();
+        long start = System.nanoTime();
+        GameStore store = new GameStore(count);
+        long[] handles = new long[count];
+        for (int i = 0; i < count; i++) {
+            handles[i] = store.create();
+        }
+        Random random = new Random(19);
+        long moves = 0;
+        for (int i = 0; i < 10 * count; i++) {
+            int game = random.nextInt(count);
+            if (store.play(handles[game], random.nextInt(GameData.COLUMNS)) != -1) {
+                moves++;
+                if (store.getWinner(handles[game]) != 0) {
+                    //start a new game, which takes the finished game's slot
+                    store.release(handles[game]);
+                    handles[game] = store.create();
+                }
+            }
+        }
+        System.out.println("GAME STORE: " + count + " games, " + moves + " moves in "
+                + (System.nanoTime() - start) / 1000000 + " ms, " + (usedMemory() - before) / 1024 / 1024 + " MB");
+        store = null;
+        handles = null;
+
+        before = usedMemory();
+        start = System.nanoTime();
+        GameEngine[] engines = new GameEngine[count];
+        for (int i = 0; i < count; i++) {
+            engines[i] = new GameEngine();
+        }
+        random = new Random(19);
+        moves = 0;
+        for (int i = 0; i < 10 * count; i++) {
+            int game = random.nextInt(count);
+            if (engines[game].play(random.nextInt(GameData.COLUMNS)) != -1) {
+                moves++;
+                if (engines[game].getWinner() != 0) {
+                    engines[game] = new GameEngine();
+                }
+            }
+        }
+        System.out.println("GAME ENGINES: " + count + " games, " + moves + " moves in "
+                + (System.nanoTime() - start) / 1000000 + " ms, " + (usedMemory() - before) / 1024 / 1024 + " MB");
+    }
+
+    /**
+     * Measures the memory in use, after collecting garbage.
+     *
+     * @return the used heap, in bytes
+     */
+    private static long usedMemory() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            runtime.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
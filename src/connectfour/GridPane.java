@@ -2,57 +2,77 @@ package connectfour;
 
 import java.awt.BasicStroke;
 import java.awt.Color;
+import java.awt.Dimension;
 import java.awt.Graphics;
 import java.awt.Graphics2D;
-import java.awt.GridLayout;
+import java.awt.Insets;
+import java.awt.Point;
+import java.awt.Rectangle;
 import java.awt.RenderingHints;
 import java.awt.Toolkit;
 import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
+import java.util.ArrayList;
+import java.util.List;
 import javax.swing.BorderFactory;
 import javax.swing.JOptionPane;
 import javax.swing.JPanel;
 
 /**
  * The grid component which houses all the pieces.
+ * <p>
+ * The whole grid is one component: it paints the cells, the pieces, the hovering piece and the
+ * stroke through the winning pieces itself, and works out the column under the mouse from the
+ * mouse's position, so there is one listener rather than one for every cell.
+ * <p>
+ * Each grid remembers what it last painted in every cell, so after a move or a mouse movement
+ * only the cells which changed are repainted ({@link #update()}). The whole grid is only
+ * repainted when the game is loaded or reset, or the colors change ({@link #refresh()}).
+ * New pieces fall into place (see {@link DropAnimation}) rather than appearing straight away.
  *
  * @author elliot gorman
  */
 class GridPane extends JPanel {
     /**
-     * Flag for when to draw the black stroke through the winning pieces.
+     * The width of the stroke through the winning pieces.
      */
-    private boolean won = false;
+    static final int WIN_STROKE = 12;
 
     /**
-     * The individual panels that make up the grid.
+     * The grids being shown (locked on itself), so changes to the game repaint every one of them.
      */
-    private static CirclePanel[][] cList = new CirclePanel[GameData.COLUMNS][GameData.COLUMNS];
+    private static final List<GridPane> grids = new ArrayList<GridPane>();
 
     /**
-     * Initializes each of the panels that make up the grid.
+     * The column the mouse is over, or -1 if none.
      */
-    private void initPanels() {
-        int count = 0; // used to give names to boxes
+    private int hoverColumn = -1;
 
-        //loops through all the panels
-        for (int i = 0; i < GameData.ROWS; i++) {
-            for (int j = 0; j < GameData.COLUMNS; j++) {
-                //initializes
-                CirclePanel circlePanel = new CirclePanel();
-                //adds the event listener
-                circlePanel.addMouseListener(new BoxListener());
-                //set the size, border and name
-                circlePanel.setName("" + (count % GameData.COLUMNS) + "," + (count / GameData.COLUMNS)); //gives each panel a name according to their x and y
-
-                //add this panel to this list
-                cList[i][j] = circlePanel;
-                ++count;
-                //add the panel to the grid
-                add(circlePanel);
-            }
-        }
-    }
+    /**
+     * What was last painted in each cell (row by row): the player of the piece,
+     * the player negated for the hovering piece, or 0 if empty.
+     */
+    private final int[] shown = new int[BitBoard.CELLS];
+
+    /**
+     * The column last painted with the darker border, or -1 if none.
+     */
+    private int shownHighlight = -1;
+
+    /**
+     * The area of the stroke through the winning pieces last painted, or {@code null} if none.
+     */
+    private Rectangle shownWin;
+
+    /**
+     * The number of cells asked to be repainted, by every grid.
+     */
+    private static long repaintedCells;
+
+    /**
+     * The number of cells painted, by every grid.
+     */
+    private static long paintedCells;
 
     /**
      * Instantiates a new GridPane component.
@@ -61,227 +81,471 @@ class GridPane extends JPanel {
         //sets basic parameters of the pane
         setOpaque(true);
         setBackground(Color.WHITE);
-        //grid layout for the grid constraints
-        setLayout(new GridLayout(GameData.ROWS, GameData.COLUMNS));
         //sets the border
         setBorder(BorderFactory.createEmptyBorder(1, 1, 1, 1));
+        setPreferredSize(new Dimension(GameData.COLUMNS * 3 + 2, GameData.ROWS * 3 + 2));
 
-        //initialize panels
-        initPanels();
+        //one listener for the whole grid
+        BoardListener listener = new BoardListener();
+        addMouseListener(listener);
+        addMouseMotionListener(listener);
     }
 
     /**
-     * Removes all the "hovering" pieces present, and places the first
-     * "hovering", greyed out piece at the bottom of the board where
-     * the user's mouse is.
+     * Adds the grid to the grids being shown.
+     */
+    //@Override
+    public void addNotify() {
+        super.addNotify();
+        synchronized (grids) {
+            grids.add(this);
+        }
+    }
+
+    /**
+     * Removes the grid from the grids being shown.
+     */
+    //@Override
+    public void removeNotify() {
+        synchronized (grids) {
+            grids.remove(this);
+        }
+        DropAnimation.cancel(this);
+        super.removeNotify();
+    }
+
+    /**
+     * Moves the "hovering", greyed out piece to the bottom of the column the
+     * user's mouse is in (after the board has changed under it).
      */
     static void disableLastHover() {
-        for (int i = 0; i < GameData.ROWS; i++) {
-            for (int j = 0; j < GameData.COLUMNS; j++) {
-                if (cList[i][j].isHover()) {
-                    int n = GameData.nextAvailableSpace(j);
-                    cList[i][j].setHover(false);
-                    cList[i][j].repaint();
-                    cList[n][j].setHover(true);
-                    cList[n][j].repaint();
-                    return;
-                }
+        update();
+    }
+
+    /**
+     * Refreshes the whole of every grid being shown (for loading, resetting and color changes).
+     */
+    static void refresh() {
+        synchronized (grids) {
+            for (int i = 0; i < grids.size(); i++) {
+                GridPane grid = grids.get(i);
+                //the pieces appear straight away
+                DropAnimation.cancel(grid);
+                grid.repaintChanges(false);
+                grid.repaint();
+                repaintedCells += BitBoard.CELLS;
             }
         }
     }
 
     /**
-     * Refreshes each of the panels in the grid.
+     * Repaints only the cells which changed in every grid being shown (for moves).
+     *
+     * @return the number of cells asked to be repainted
      */
-    static void refresh() {
-        //loops through all the panels
+    static int update() {
+        int cells = 0;
+        synchronized (grids) {
+            for (int i = 0; i < grids.size(); i++) {
+                cells += grids.get(i).repaintChanges(true);
+            }
+        }
+        return cells;
+    }
+
+    /**
+     * Getter for the number of cells asked to be repainted, by every grid.
+     *
+     * @return the repainted cell count
+     */
+    static long getRepaintedCells() {
+        return repaintedCells;
+    }
+
+    /**
+     * Getter for the number of cells painted, by every grid
+     * (more than asked for if Swing merges repaints, or the window is uncovered).
+     *
+     * @return the painted cell count
+     */
+    static long getPaintedCells() {
+        return paintedCells;
+    }
+
+    /**
+     * Finds the cells which changed since they were last painted, and remembers them as painted.
+     *
+     * @param repaint {@code true} to repaint the cells which changed
+     * @return the number of cells which changed
+     */
+    private int repaintChanges(boolean repaint) {
+        int[][] board = GameData.getBoard();
+        int winner = GameData.isWinner();
+        int hoverRow = hoverRow(winner);
+        int player = GameData.getPlayer();
+        int cells = 0;
         for (int i = 0; i < GameData.ROWS; i++) {
             for (int j = 0; j < GameData.COLUMNS; j++) {
-                //if move was performed on the panel
-                if (GameData.getBoard()[i][j] != 0) {
-                    //draw is true
-                    cList[i][j].setDraw(true);
-                    //changes color depending on player
-                    if (GameData.getBoard()[i][j] == 2) {
-                        cList[i][j].setColor(GameData.getPlayerTwoColor());
-                    } else {
-                        cList[i][j].setColor(GameData.getPlayerOneColor());
+                int cell = board[i][j];
+                if (cell == 0 && i == hoverRow && j == hoverColumn) {
+                    cell = -player;
+                }
+                if (shown[i * GameData.COLUMNS + j] != cell) {
+                    //a new piece falls into place
+                    if (repaint && cell > 0 && shown[i * GameData.COLUMNS + j] <= 0) {
+                        DropAnimation.start(this, j, i);
+                    }
+                    shown[i * GameData.COLUMNS + j] = cell;
+                    if (repaint) {
+                        repaint(cellBounds(j, i, j, i));
                     }
-                    //repaint that panel
-                    cList[i][j].repaint();
-                } else {
-                    //don't draw, just repaint
-                    cList[i][j].setDraw(false);
-                    cList[i][j].repaint();
+                    cells++;
                 }
             }
         }
+
+        //the borders of the old and new highlighted columns
+        int highlight = CirclePanel.getColumnBlockState() ? -1 : hoverColumn;
+        if (highlight != shownHighlight) {
+            if (repaint && shownHighlight >= 0) {
+                repaint(cellBounds(shownHighlight, 0, shownHighlight, GameData.ROWS - 1));
+            }
+            if (repaint && highlight >= 0) {
+                repaint(cellBounds(highlight, 0, highlight, GameData.ROWS - 1));
+            }
+            cells += ((shownHighlight >= 0 ? 1 : 0) + (highlight >= 0 ? 1 : 0)) * GameData.ROWS;
+            shownHighlight = highlight;
+        }
+
+        //the stroke through the winning pieces crosses cells which didn't change
+        Rectangle win = null;
+        if (winner > 0) {
+            Point[] pieces = GameData.getWinningPieces();
+            win = cellBounds(pieces[0].x, pieces[0].y, pieces[3].x, pieces[3].y);
+            win.grow(WIN_STROKE, WIN_STROKE);
+        }
+        if (win == null ? shownWin != null : !win.equals(shownWin)) {
+            if (repaint && shownWin != null) {
+                repaint(shownWin);
+            }
+            if (repaint && win != null) {
+                repaint(win);
+            }
+            shownWin = win;
+        }
+        if (repaint) {
+            repaintedCells += cells;
+        }
+        return cells;
     }
 
     /**
-     * Paints the stroke through the winning pieces.
+     * Getter for the width of each cell.
+     *
+     * @return the cell width
+     */
+    private int cellWidth() {
+        Insets insets = getInsets();
+        return (getWidth() - insets.left - insets.right) / GameData.COLUMNS;
+    }
+
+    /**
+     * Getter for the height of each cell.
+     *
+     * @return the cell height
+     */
+    private int cellHeight() {
+        Insets insets = getInsets();
+        return (getHeight() - insets.top - insets.bottom) / GameData.ROWS;
+    }
+
+    /**
+     * Gets the left of the cells, which are centered like in a grid layout.
+     *
+     * @return the x of the first column
+     */
+    private int gridX() {
+        Insets insets = getInsets();
+        return insets.left + (getWidth() - insets.left - insets.right - cellWidth() * GameData.COLUMNS) / 2;
+    }
+
+    /**
+     * Gets the top of the cells, which are centered like in a grid layout.
+     *
+     * @return the y of the first row
+     */
+    private int gridY() {
+        Insets insets = getInsets();
+        return insets.top + (getHeight() - insets.top - insets.bottom - cellHeight() * GameData.ROWS) / 2;
+    }
+
+    /**
+     * Gets the area of a block of cells.
+     *
+     * @param x1 the column of one corner
+     * @param y1 the row of one corner
+     * @param x2 the column of the opposite corner
+     * @param y2 the row of the opposite corner
+     * @return the area covering every cell in the block
+     */
+    private Rectangle cellBounds(int x1, int y1, int x2, int y2) {
+        int width = cellWidth();
+        int height = cellHeight();
+        int left = gridX() + Math.min(x1, x2) * width;
+        int top = gridY() + Math.min(y1, y2) * height;
+        return new Rectangle(left, top, (Math.abs(x2 - x1) + 1) * width, (Math.abs(y2 - y1) + 1) * height);
+    }
+
+    /**
+     * Gets the area of a piece which may be between rows (while it falls).
+     *
+     * @param column the column
+     * @param row    the row (counted from the top, negative above the grid)
+     * @return the area of the piece
+     */
+    Rectangle pieceBounds(int column, double row) {
+        int width = cellWidth();
+        int height = cellHeight();
+        return new Rectangle(gridX() + column * width, gridY() + (int) Math.round(row * height), width, height);
+    }
+
+    /**
+     * Gets the row of the hovering piece: the next available space of the column under the mouse.
+     *
+     * @param winner the winner (there's no hovering piece once the game is over)
+     * @return the row, or -1 if there's no hovering piece
+     */
+    private int hoverRow(int winner) {
+        if (hoverColumn < 0 || winner != 0 || CirclePanel.getHoverState()) return -1;
+        return GameData.nextAvailableSpace(hoverColumn);
+    }
+
+    /**
+     * Finds the column at a point on the grid.
+     *
+     * @param x the x of the point
+     * @param y the y of the point
+     * @return the column, or -1 if the point isn't over a cell
+     */
+    int columnAt(int x, int y) {
+        int width = cellWidth();
+        int height = cellHeight();
+        if (width <= 0 || height <= 0) return -1;
+        x -= gridX();
+        y -= gridY();
+        if (x < 0 || y < 0 || x >= width * GameData.COLUMNS || y >= height * GameData.ROWS) return -1;
+        return x / width;
+    }
+
+    /**
+     * Paints the cells, the pieces, the hovering piece and the stroke through the winning pieces.
+     * Only the cells being repainted are painted.
      *
      * @param g the graphics context
      */
     //@Override
-    //overrides paint and not paintComponent because paint() doesn't call paintChildren(), which would hide the line.
-    public void paint(Graphics g) {
-        super.paint(g);
-        //if there is a winner
-        if (won) {
-            //get the first winning piece
-            CirclePanel winStart = cList[(int) GameData.getWinningPieces()[0].getY()][(int) GameData.getWinningPieces()[0].getX()];
-            //get the last winning piece
-            CirclePanel winEnd = cList[(int) GameData.getWinningPieces()[3].getY()][(int) GameData.getWinningPieces()[3].getX()];
-
-            Graphics2D graphics2D = (Graphics2D) g;
-            //antialiasing
+    public void paintComponent(Graphics g) {
+        //refresh
+        super.paintComponent(g);
+        int width = cellWidth();
+        int height = cellHeight();
+        if (width <= 0 || height <= 0) return;
+        int left = gridX();
+        int top = gridY();
+        int[][] board = GameData.getBoard();
+        int winner = GameData.isWinner();
+        int hoverRow = hoverRow(winner);
+
+        //only the cells inside the area being repainted
+        int firstColumn = 0;
+        int lastColumn = GameData.COLUMNS - 1;
+        int firstRow = 0;
+        int lastRow = GameData.ROWS - 1;
+        Rectangle clip = g.getClipBounds();
+        if (clip != null) {
+            firstColumn = Math.max(firstColumn, (clip.x - left) / width);
+            lastColumn = Math.min(lastColumn, (clip.x + clip.width - 1 - left) / width);
+            firstRow = Math.max(firstRow, (clip.y - top) / height);
+            lastRow = Math.min(lastRow, (clip.y + clip.height - 1 - top) / height);
+        }
+        if (firstColumn <= lastColumn && firstRow <= lastRow) {
+            paintedCells += (lastColumn - firstColumn + 1) * (lastRow - firstRow + 1);
+        }
+
+        Graphics2D graphics2D = (Graphics2D) g.create();
+        //the circles are copied from images already drawn with antialiasing
+        for (int i = firstRow; i <= lastRow; i++) {
+            for (int j = firstColumn; j <= lastColumn; j++) {
+                if (board[i][j] != 0 && DropAnimation.isFalling(this, j, i)) {
+                    //the piece hasn't landed yet
+                    continue;
+                }
+                if (board[i][j] != 0) {
+                    //changes color depending on player
+                    Color color = board[i][j] == 2 ? GameData.getPlayerTwoColor() : GameData.getPlayerOneColor();
+                    CirclePanel.paint(graphics2D, color, false, left + j * width, top + i * height, width, height);
+                } else if (i == hoverRow && j == hoverColumn) {
+                    CirclePanel.paint(graphics2D, GameData.getCurrentPlayerColor(), true,
+                            left + j * width, top + i * height, width, height);
+                }
+            }
+        }
+
+        //the falling pieces, which only show inside the grid
+        double[] falling = DropAnimation.getFalling(this);
+        if (falling.length > 0) {
+            Graphics2D fallingGraphics = (Graphics2D) graphics2D.create();
+            fallingGraphics.clipRect(left, top, width * GameData.COLUMNS, height * GameData.ROWS);
+            for (int f = 0; f < falling.length; f += 3) {
+                int column = (int) falling[f];
+                int row = (int) falling[f + 1];
+                if (Double.isNaN(falling[f + 2]) || board[row][column] == 0) continue;
+                Color color = board[row][column] == 2 ? GameData.getPlayerTwoColor() : GameData.getPlayerOneColor();
+                Rectangle bounds = pieceBounds(column, falling[f + 2]);
+                CirclePanel.paint(fallingGraphics, color, false, bounds.x, bounds.y, width, height);
+            }
+            fallingGraphics.dispose();
+        }
+
+        //the cell borders, darker in the column under the mouse
+        graphics2D.setColor(Color.BLACK);
+        for (int j = firstColumn; j <= lastColumn; j++) {
+            int border = j == hoverColumn && !CirclePanel.getColumnBlockState()
+                    ? CirclePanel.SELECTED_BORDER : CirclePanel.UNSELECTED_BORDER;
+            for (int i = firstRow; i <= lastRow; i++) {
+                for (int b = 0; b < border; b++) {
+                    graphics2D.drawRect(left + j * width + b, top + i * height + b,
+                            width - 2 * b - 1, height - 2 * b - 1);
+                }
+            }
+        }
+
+        //if someone actually won, draw line from middle of first piece to middle of last piece
+        if (winner > 0) {
+            Point[] pieces = GameData.getWinningPieces();
             graphics2D.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
-            //black line
-            graphics2D.setColor(Color.BLACK);
-            //thicker brush
-            graphics2D.setStroke(new BasicStroke(12));
-
-            //draw line from middle of first piece to middle of last piece
-            graphics2D.drawLine(winStart.getX() + winStart.getWidth() / 2, winStart.getY() + winStart.getWidth() / 2, winEnd.getX() + winEnd.getWidth() / 2, winEnd.getY() + winEnd.getWidth() / 2);
-            //reset won flag
-            won = false;
+            graphics2D.setStroke(new BasicStroke(WIN_STROKE));
+            graphics2D.drawLine(left + pieces[0].x * width + width / 2, top + pieces[0].y * height + height / 2,
+                    left + pieces[3].x * width + width / 2, top + pieces[3].y * height + height / 2);
         }
+        graphics2D.dispose();
     }
 
     /**
-     * The mouseListener applied to each panel in the grid.
+     * The mouse listener for the whole grid.
      *
      * @author elliot gorman
      */
-    class BoxListener extends MouseAdapter {
-
+    class BoardListener extends MouseAdapter {
         /**
-         * When the mouse enters a CirclePanel, takes appropriate action,
-         * by highlighting the column and displaying the greyed out piece
-         * (if the user hasn't chosen to block the highlights).
+         * When the mouse moves to another column, moves the column highlight and the greyed out
+         * piece to it (if the user hasn't chosen to block the highlights).
          *
          * @param e the mouseEvent
          */
         //@Override
-        public void mouseEntered(MouseEvent e) {
-            //gets the source and it's name
-            CirclePanel source = (CirclePanel) e.getSource();
-            String name = source.getName();
-
-            //gets the x and y position of the panel
-            int y = Integer.parseInt(name.substring(0, name.indexOf(',')));
-            int x = GameData.nextAvailableSpace(y);
-
-            //enable the hovering
-            if (x != -1) {
-                cList[x][y].setHover(true);
-                cList[x][y].repaint();
-            }
-
-            //darken the column border.
-            for (int i = 0; i < GameData.ROWS; i++) {
-                cList[i][y].setColBorder(CirclePanel.SELECTED_BORDER);
+        public void mouseMoved(MouseEvent e) {
+            int column = columnAt(e.getX(), e.getY());
+            if (column != hoverColumn) {
+                hoverColumn = column;
+                repaintChanges(true);
             }
         }
 
         /**
-         * When the mouse enters a CirclePanel, takes appropriate action,
-         * by removing the highlighting on the column and the greyed out piece
-         * (if the user hasn't chosen to block the highlights).
+         * When the mouse leaves the grid, removes the column highlight and the greyed out piece.
          *
          * @param e the mouseEvent
          */
         //@Override
         public void mouseExited(MouseEvent e) {
-            //gets the source and it's name
-            CirclePanel source = (CirclePanel) e.getSource();
-            String name = source.getName();
-
-            //gets the x and y position of the panel
-            int y = Integer.parseInt(name.substring(0, name.indexOf(',')));
-            int x = GameData.nextAvailableSpace(y);
-
-            //remove the hovering piece
-            if (x != -1) {
-                cList[x][y].setHover(false);
-                cList[x][y].repaint();
-            }
-
-            //set the border back to default for that column
-            for (int i = 0; i < GameData.ROWS; i++) {
-                cList[i][y].setColBorder(CirclePanel.UNSELECTED_BORDER);
+            if (hoverColumn != -1) {
+                hoverColumn = -1;
+                repaintChanges(true);
             }
         }
 
-
         /**
-         * The 'on clicked method', processes the user's clicks on the panels.
+         * The 'on clicked method', processes the user's clicks on the grid.
+         * If the computer opponent is enabled, it starts thinking about its reply
+         * (clicks are ignored until it has moved).
          *
          * @param e the mouseEvent
          */
         //@Override
         public void mouseClicked(MouseEvent e) {
-            //gets the invoking panel
-            CirclePanel clickedBox = (CirclePanel) e.getSource();
-            //gets the name (which is it's pos)
-            String name = clickedBox.getName();
-
-            //gets the column from it's name
-            int x = Integer.parseInt(name.substring(0, name.indexOf(',')));
-            //calculates the y position (the row)
-            int y = GameData.nextAvailableSpace(x);
-
-            //if there is a position in that column to move to
-            if (y >= 0) {
-                cList[y][x].setHover(false);
-                cList[y][x].repaint();
-
-                if (y != 0) {
-                    cList[y - 1][x].setHover(true);
-                    cList[y - 1][x].repaint();
-                }
-
-                //set the game board at position y,x to the current player
-                GameData.setBoard(y, x);
-
-                //print the board to the terminal
-                GameData.printBoard();
-
-                //refresh the painting
-                GridPane.refresh();
-
-                //check for winner
-                GameData.setWinner(GameData.isWinner());
+            //gets the column under the mouse
+            int x = columnAt(e.getX(), e.getY());
+            if (x == -1) return;
 
-                //if someone won or draw
-                if (GameData.getWinner() != 0) {
-                    if (y != 0) {
-                        cList[y - 1][x].setHover(false);
-                        cList[y - 1][x].repaint();
-                    }
-                    //beep
-                    Toolkit.getDefaultToolkit().beep();
-                    //if someone actually won and it wasn't a tie
-                    if (GameData.getWinner() != -1) {
-                        //won flag is true, repaint for line through pieces.
-                        won = true;
-                        repaint();
+            //if it's the computer's turn (enabled mid game or after loading) it moves instead
+            if (!ComputerPlayer.isTurn(GameData.getGame())) {
+                dropPiece(x);
+            }
+            //let the computer reply, on its own thread
+            if (ComputerPlayer.isTurn(GameData.getGame()) && !ComputerPlayer.isThinking()) {
+                ConnectFour.activePlayer.setText("COMPUTER THINKING...");
+                ComputerPlayer.think(GameData.getGame(), new MoveListener() {
+                    //@Override
+                    public void thinking(SearchResult result) {
+                        ConnectFour.activePlayer.setText("COMPUTER THINKING: COLUMN " + (result.getMove() + 1)
+                                + ", DEPTH " + result.getDepth());
                     }
 
-                    //popup message box
-                    int input = JOptionPane.showOptionDialog(GridPane.this, GameData.winnerMessage(),
-                            "GAME OVER", JOptionPane.CLOSED_OPTION, JOptionPane.INFORMATION_MESSAGE,
-                            null, null, null);
-                    //reset the game when user presses Ok or closes the tab
-                    if (input == JOptionPane.OK_OPTION || input == -1) {
-                        //reset
-                        GameData.reset();
-                        refresh();
-                        //reset the active player display
-                        ConnectFour.activePlayerColor.setBackground(GameData.getPlayerOneColor());
-                        ConnectFour.activePlayer.setText("PLAYER 1's TURN");
+                    //@Override
+                    public void chosen(SearchResult result) {
+                        //the position is the one searched, but check the game isn't over
+                        if (result != null && ComputerPlayer.isTurn(GameData.getGame())) {
+                            dropPiece(result.getMove());
+                        }
                     }
+                });
+            }
+        }
+    }
+
+    /**
+     * Drops the current player's piece in a column, then handles the end of the game.
+     *
+     * @param x the column
+     */
+    private void dropPiece(int x) {
+        //calculates the y position (the row)
+        int y = GameData.nextAvailableSpace(x);
+
+        //if there is a position in that column to move to
+        if (y >= 0) {
+            //set the game board at position y,x to the current player
+            GameData.setBoard(y, x);
+
+            //print the board to the terminal
+            GameData.printBoard();
+
+            //check for winner
+            GameData.setWinner(GameData.isWinner());
+
+            //repaint the cells which changed (and the line through the winning pieces, if any)
+            int cells = GridPane.update();
+            System.out.println("REPAINTED " + cells + " of " + BitBoard.CELLS + " cells ("
+                    + getRepaintedCells() + " repainted, " + getPaintedCells() + " painted so far)\n");
+
+            //if someone won or draw
+            if (GameData.getWinner() != 0) {
+                //beep
+                Toolkit.getDefaultToolkit().beep();
+
+                //popup message box
+                int input = JOptionPane.showOptionDialog(GridPane.this, GameData.winnerMessage(),
+                        "GAME OVER", JOptionPane.CLOSED_OPTION, JOptionPane.INFORMATION_MESSAGE,
+                        null, null, null);
+                //reset the game when user presses Ok or closes the tab
+                if (input == JOptionPane.OK_OPTION || input == -1) {
+                    //reset
+                    GameData.reset();
+                    refresh();
+                    //reset the active player display
+                    ConnectFour.activePlayerColor.setBackground(GameData.getPlayerOneColor());
+                    ConnectFour.activePlayer.setText("PLAYER 1's TURN");
                 }
             }
         }
@@ -0,0 +1,16 @@
+package connectfour;
+
+/**
+ * Hears back from the move journal once it has recovered the game in progress when the program
+ * last closed (or crashed). Called on the Event Dispatch Thread.
+ *
+ * @author elliot gorman
+ */
+interface JournalListener {
+    /**
+     * Called once the journal has been read and is ready for new moves.
+     *
+     * @param moves the columns played in the recovered game, empty if there is nothing to carry on from
+     */
+    void recovered(int[] moves);
+}
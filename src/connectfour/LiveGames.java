@@ -0,0 +1,395 @@
+package connectfour;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Every game being played in this program, by id, checkpointed to one memory-mapped file
+ * so they can all be carried on after a restart.
+ * <p>
+ * Checkpoints run on a background thread while the games carry on: each game is copied while
+ * holding its own lock (only for as long as the copy takes), so no game waits on another.
+ * The file holds two checkpoint slots. Each checkpoint is written to the slot not in use,
+ * forced to disk, and only then is the header switched over to it, so a crash part way through
+ * a checkpoint leaves the previous one intact.
+ * <p>
+ * File layout: a header of the magic number, version and the slot in use (three ints), the
+ * checkpoint number (long), then for each slot its offset (long), capacity and game count (ints).
+ * Each game in a slot is a record of its id (int), player to move (byte), move count (byte)
+ * and moves packed two columns to a byte (high four bits first), padded to {@link #RECORD_BYTES}.
+ *
+ * @author elliot gorman
+ */
+final class LiveGames {
+    /**
+     * The number identifying a checkpoint file ("C4LV").
+     */
+    static final int MAGIC = 0x43344C56;
+
+    /**
+     * The current file version.
+     */
+    static final int VERSION = 1;
+
+    /**
+     * The size of the header, in bytes.
+     */
+    static final int HEADER_BYTES = 52;
+
+    /**
+     * The size of each game's record, in bytes.
+     */
+    static final int RECORD_BYTES = 32;
+
+    /**
+     * The number of games a slot first makes room for.
+     */
+    static final int INITIAL_CAPACITY = 1024;
+
+    /**
+     * The default time between checkpoints, in milliseconds.
+     */
+    static final long DEFAULT_INTERVAL = 1000;
+
+    /**
+     * The default location of the checkpoint file.
+     */
+    static final String DEFAULT_PATH = "connectfour/live.games";
+
+    /**
+     * The games, by id.
+     */
+    private final Map<Integer, GameEngine> games = new ConcurrentHashMap<Integer, GameEngine>();
+
+    /**
+     * The id of the next game added.
+     */
+    private final AtomicInteger nextId = new AtomicInteger(1);
+
+    /**
+     * The location of the checkpoint file.
+     */
+    private final String path;
+
+    /**
+     * The open checkpoint file, or {@code null} until the first checkpoint or restore.
+     */
+    private RandomAccessFile file;
+
+    /**
+     * The mapped checkpoint file.
+     */
+    private MappedByteBuffer buffer;
+
+    /**
+     * The thread the checkpoints run on, or {@code null} if not started.
+     */
+    private ScheduledExecutorService checkpointer;
+
+    /**
+     * Instantiates a new set of games, without reading or writing the checkpoint file yet.
+     *
+     * @param path the location of the checkpoint file
+     */
+    LiveGames(String path) {
+        this.path = path;
+    }
+
+    /**
+     * Adds a game.
+     *
+     * @param game the game
+     * @return the id of the game
+     */
+    int add(GameEngine game) {
+        int id = nextId.getAndIncrement();
+        games.put(Integer.valueOf(id), game);
+        return id;
+    }
+
+    /**
+     * Gets a game.
+     *
+     * @param id the id of the game
+     * @return the game, or {@code null} if there is no such game
+     */
+    GameEngine get(int id) {
+        return games.get(Integer.valueOf(id));
+    }
+
+    /**
+     * Removes a game (such as one which has finished), so it is no longer checkpointed.
+     *
+     * @param id the id of the game
+     */
+    void remove(int id) {
+        games.remove(Integer.valueOf(id));
+    }
+
+    /**
+     * Getter for the number of games.
+     *
+     * @return the game count
+     */
+    int size() {
+        return games.size();
+    }
+
+    /**
+     * Adds every game from the last checkpoint, keeping their ids.
+     *
+     * @return the number of games restored
+     * @throws IOException if the checkpoint file can't be read, or isn't a checkpoint file
+     */
+    synchronized int restore() throws IOException {
+        if (!new File(path).exists()) return 0;
+        open();
+        int slot = buffer.getInt(8);
+        long offset = buffer.getLong(slotHeader(slot));
+        int count = buffer.getInt(slotHeader(slot) + 12);
+        if (offset + (long) count * RECORD_BYTES > buffer.capacity()) throw new IOException("Corrupt checkpoint");
+
+        int restored = 0;
+        for (int i = 0; i < count; i++) {
+            int record = (int) offset + i * RECORD_BYTES;
+            int moves = buffer.get(record + 5);
+            int[] columns = new int[Math.max(0, Math.min(moves, BitBoard.CELLS))];
+            for (int m = 0; m < columns.length; m++) {
+                int b = buffer.get(record + 6 + m / 2);
+                columns[m] = m % 2 == 0 ? b >> 4 & 0xF : b & 0xF;
+            }
+            GameEngine game = new GameEngine();
+            //the moves decide who is to move, so a record which disagrees is damaged
+            if (!game.replay(columns) || game.getPlayer() != buffer.get(record + 4)) {
+                System.err.println("Couldn't properly parse checkpointed game " + buffer.getInt(record)
+                        + ". Skipping...");
+                continue;
+            }
+            int id = buffer.getInt(record);
+            games.put(Integer.valueOf(id), game);
+            //new games never reuse a restored game's id
+            while (nextId.get() <= id) {
+                nextId.compareAndSet(nextId.get(), id + 1);
+            }
+            restored++;
+        }
+        return restored;
+    }
+
+    /**
+     * Checkpoints every game now.
+     *
+     * @return the number of games checkpointed
+     * @throws IOException if the checkpoint file can't be written
+     */
+    synchronized int checkpoint() throws IOException {
+        open();
+        int slot = 1 - buffer.getInt(8);
+        int header = slotHeader(slot);
+        //a game added during the checkpoint is caught by the next one
+        int count = games.size();
+        if (buffer.getInt(header + 8) < count) {
+            //make a bigger slot at the end of the file
+            int capacity = Math.max(INITIAL_CAPACITY, count * 2);
+            long offset = buffer.capacity();
+            map(offset + (long) capacity * RECORD_BYTES);
+            buffer.putLong(header, offset);
+            buffer.putInt(header + 8, capacity);
+        }
+
+        int offset = (int) buffer.getLong(header);
+        int capacity = buffer.getInt(header + 8);
+        int written = 0;
+        Iterator<Map.Entry<Integer, GameEngine>> entries = games.entrySet().iterator();
+        while (entries.hasNext() && written < capacity) {
+            Map.Entry<Integer, GameEngine> entry = entries.next();
+            GameEngine game = entry.getValue();
+            int[] moves;
+            int player;
+            //copy the game under its own lock, so the moves and player match
+            synchronized (game) {
+                moves = game.getHistory();
+                player = game.getPlayer();
+            }
+            int record = offset + written * RECORD_BYTES;
+            buffer.putInt(record, entry.getKey().intValue());
+            buffer.put(record + 4, (byte) player);
+            buffer.put(record + 5, (byte) moves.length);
+            for (int i = 0; i < moves.length; i += 2) {
+                int second = i + 1 < moves.length ? moves[i + 1] : 0;
+                buffer.put(record + 6 + i / 2, (byte) (moves[i] << 4 | second));
+            }
+            written++;
+        }
+        buffer.putInt(header + 12, written);
+        //the games must be on disk before the header points at them
+        buffer.force();
+        buffer.putLong(12, buffer.getLong(12) + 1);
+        buffer.putInt(8, slot);
+        buffer.force();
+        return written;
+    }
+
+    /**
+     * Opens and maps the checkpoint file, creating it if needed.
+     *
+     * @throws IOException if it can't be opened, or isn't a checkpoint file
+     */
+    private void open() throws IOException {
+        if (file != null) return;
+        boolean exists = new File(path).exists() && new File(path).length() > 0;
+        file = new RandomAccessFile(path, "rw");
+        if (!exists) {
+            map(HEADER_BYTES);
+            buffer.putInt(0, MAGIC);
+            buffer.putInt(4, VERSION);
+            return;
+        }
+        map(file.length());
+        if (buffer.capacity() < HEADER_BYTES || buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION
+                || (buffer.getInt(8) & ~1) != 0) {
+            file.close();
+            file = null;
+            throw new IOException("Not a checkpoint file: " + path);
+        }
+    }
+
+    /**
+     * Maps the checkpoint file, growing it if needed.
+     *
+     * @param size the size of the file
+     * @throws IOException if it can't be mapped
+     */
+    private void map(long size) throws IOException {
+        if (size > Integer.MAX_VALUE) throw new IOException("Too many games to checkpoint");
+        buffer = file.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size);
+    }
+
+    /**
+     * Gets where a slot's offset, capacity and game count are in the header.
+     *
+     * @param slot the slot (0 or 1)
+     * @return the offset of the slot's header
+     */
+    private static int slotHeader(int slot) {
+        return 20 + slot * 16;
+    }
+
+    /**
+     * Checkpoints every game on a background thread, over and over.
+     *
+     * @param intervalMillis the time between checkpoints, in milliseconds
+     */
+    synchronized void start(long intervalMillis) {
+        if (checkpointer != null) return;
+        checkpointer = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            //@Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "Checkpointer");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        checkpointer.scheduleWithFixedDelay(new Runnable() {
+            //@Override
+            public void run() {
+                try {
+                    checkpoint();
+                } catch (IOException e) {
+                    System.err.println("Unexpected I/O Error checkpointing the games. "
+                            + "Keeping the last checkpoint.");
+                }
+            }
+        }, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stops checkpointing, takes a last checkpoint and closes the checkpoint file.
+     *
+     * @throws IOException if the last checkpoint can't be written
+     */
+    void close() throws IOException {
+        ScheduledExecutorService stopping;
+        synchronized (this) {
+            stopping = checkpointer;
+            checkpointer = null;
+        }
+        if (stopping != null) {
+            stopping.shutdown();
+            try {
+                stopping.awaitTermination(DEFAULT_INTERVAL, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        synchronized (this) {
+            checkpoint();
+            file.close();
+            file = null;
+        }
+    }
+
+    /**
+     * Times checkpointing and restoring many games while they are being played.
+     * <p>
+     * Usage (from the src folder):
+     * {@code java connectfour.LiveGames [games]}
+     *
+     * @param args the number of games (optional)
+     */
+    public static void main(String[] args) {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 10000;
+        final LiveGames live = new LiveGames(DEFAULT_PATH);
+        for (int i = 0; i < count; i++) {
+            live.add(new GameEngine());
+        }
+        //play random moves in every game while checkpointing
+        final int total = count;
+        Thread player = new Thread(new Runnable() {
+            //@Override
+            public void run() {
+                Random random = new Random(18);
+                while (!Thread.currentThread().isInterrupted()) {
+                    GameEngine game = live.get(1 + random.nextInt(total));
+                    if (game.play(random.nextInt(GameData.COLUMNS)) != -1 && game.getWinner() != 0) {
+                        game.reset();
+                    }
+                }
+            }
+        }, "Player");
+        player.start();
+        try {
+            for (int i = 0; i < 5; i++) {
+                long start = System.nanoTime();
+                int written = live.checkpoint();
+                System.out.println("CHECKPOINTED " + written + " games in "
+                        + (System.nanoTime() - start) / 1000 + " us");
+            }
+            player.interrupt();
+            player.join();
+            live.close();
+
+            LiveGames restored = new LiveGames(DEFAULT_PATH);
+            long start = System.nanoTime();
+            int games = restored.restore();
+            System.out.println("RESTORED " + games + " games in " + (System.nanoTime() - start) / 1000 + " us");
+            restored.close();
+        } catch (IOException e) {
+            System.err.println("Unexpected I/O Error: " + e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,456 @@
+package connectfour;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Finds the computer's move with Monte Carlo tree search: the tree grows towards the moves
+ * that win the most random games (playouts), and the most played move is chosen.
+ * Each thread grows its own tree (root parallel) and their visit counts are added up at the end.
+ * <p>
+ * Tree nodes live in preallocated arrays indexed by node number, and playouts run on a reused
+ * board copy, so searching allocates nothing.
+ * <p>
+ * Usage (from the src folder): {@code java connectfour.MonteCarloSearch [milliseconds]}
+ * compares the playout speed with playouts through {@link GameEngine}, then searches the empty board.
+ *
+ * @author elliot gorman
+ */
+final class MonteCarloSearch {
+    /**
+     * The default number of nodes each thread's tree can hold.
+     */
+    static final int DEFAULT_CAPACITY = 1 << 20;
+
+    /**
+     * How strongly the search explores less played moves.
+     */
+    private static final float EXPLORATION = 1.41f;
+
+    /**
+     * The trees, the calling thread's first.
+     */
+    private final Tree[] trees;
+
+    /**
+     * The threads the other trees grow on, or {@code null} for a single thread.
+     */
+    private final ExecutorService helpers;
+
+    /**
+     * Instantiates a new search.
+     *
+     * @param threads  the number of threads (including the calling thread)
+     * @param capacity the number of nodes each thread's tree can hold
+     */
+    MonteCarloSearch(int threads, int capacity) {
+        trees = new Tree[Math.max(1, threads)];
+        for (int i = 0; i < trees.length; i++) {
+            trees[i] = new Tree(capacity, 0x9E3779B97F4A7C15L * (i + 1));
+        }
+        helpers = trees.length == 1 ? null : Executors.newFixedThreadPool(trees.length - 1, new ThreadFactory() {
+            //@Override
+            public Thread newThread(Runnable r) {
+                //helper threads never keep the program running
+                Thread thread = new Thread(r, "Monte Carlo Helper");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    /**
+     * Searches a position for the best move on every thread.
+     *
+     * @param position     the position (not changed)
+     * @param player       the player to move (either 1 or 2)
+     * @param budgetMillis how long the search may take, in milliseconds
+     * @return the most played move, scored by its win percentage, with the playouts of
+     * every thread, or {@code null} if the board is full
+     */
+    SearchResult search(BitBoard position, int player, long budgetMillis) {
+        return search(position, player, budgetMillis, null);
+    }
+
+    /**
+     * Searches a position for the best move on every thread, until the time runs out or the
+     * search is cancelled (a cancelled search returns the most played move so far).
+     *
+     * @param position     the position (not changed)
+     * @param player       the player to move (either 1 or 2)
+     * @param budgetMillis how long the search may take, in milliseconds
+     * @param listener     asked if the search is cancelled, or {@code null} for never
+     * @return the most played move, scored by its win percentage, with the playouts of
+     * every thread, or {@code null} if the board is full
+     */
+    SearchResult search(final BitBoard position, final int player, long budgetMillis,
+                        final SearchListener listener) {
+        long start = System.nanoTime();
+        final long deadline = start + budgetMillis * 1000000L;
+        List<Future<?>> futures = new ArrayList<Future<?>>();
+        for (int i = 1; i < trees.length; i++) {
+            final Tree tree = trees[i];
+            futures.add(helpers.submit(new Callable<Object>() {
+                //@Override
+                public Object call() {
+                    tree.grow(position, player, deadline, listener);
+                    return null;
+                }
+            }));
+        }
+        trees[0].grow(position, player, deadline, listener);
+        for (int i = 0; i < futures.size(); i++) {
+            try {
+                futures.get(i).get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (ExecutionException e) {
+                System.err.println("Monte Carlo helper failed: " + e.getCause());
+            }
+        }
+
+        //add up every tree's visits and wins for each column
+        long[] visits = new long[GameData.COLUMNS];
+        double[] wins = new double[GameData.COLUMNS];
+        long playouts = 0;
+        int depth = 0;
+        for (int i = 0; i < trees.length; i++) {
+            trees[i].addRootStatistics(visits, wins);
+            playouts += trees[i].playouts;
+            depth = Math.max(depth, trees[i].maxDepth);
+        }
+        int best = -1;
+        for (int col = 0; col < GameData.COLUMNS; col++) {
+            if (position.canPlay(col) && (best == -1 || visits[col] > visits[best])) {
+                best = col;
+            }
+        }
+        if (best == -1) return null;
+        int score = visits[best] == 0 ? 50 : (int) Math.round(wins[best] * 100 / visits[best]);
+        return new SearchResult(best, score, depth, playouts, System.nanoTime() - start, trees.length,
+                trees[0].playouts == 0 ? 1 : (double) playouts / trees[0].playouts, "playouts");
+    }
+
+    /**
+     * Stops the helper threads once they are no longer needed.
+     */
+    void shutdown() {
+        if (helpers != null) {
+            helpers.shutdown();
+        }
+    }
+
+    /**
+     * One thread's search tree, held in parallel arrays indexed by node number (the root is node 0).
+     */
+    private static final class Tree {
+        /**
+         * A node whose children haven't been created yet.
+         */
+        private static final byte LEAF = 0;
+
+        /**
+         * A node whose children have been created.
+         */
+        private static final byte EXPANDED = 1;
+
+        /**
+         * A node whose move won the game.
+         */
+        private static final byte WON = 2;
+
+        /**
+         * A node whose move filled the board without a winner.
+         */
+        private static final byte DRAWN = 3;
+
+        /**
+         * The index of each node's first child (its children are stored one after another).
+         */
+        private final int[] firstChild;
+
+        /**
+         * The number of children of each node.
+         */
+        private final byte[] childCount;
+
+        /**
+         * The column played to reach each node.
+         */
+        private final byte[] move;
+
+        /**
+         * The state of each node ({@link #LEAF}, {@link #EXPANDED}, {@link #WON} or {@link #DRAWN}).
+         */
+        private final byte[] state;
+
+        /**
+         * The number of playouts through each node.
+         */
+        private final int[] visits;
+
+        /**
+         * The playouts through each node won by the player who made its move (draws count half).
+         */
+        private final float[] wins;
+
+        /**
+         * The number of nodes in use.
+         */
+        private int size;
+
+        /**
+         * The nodes from the root down to the current node.
+         */
+        private final int[] path = new int[BitBoard.CELLS + 1];
+
+        /**
+         * The board the playouts are run on.
+         */
+        private final BitBoard board = new BitBoard();
+
+        /**
+         * The random number generator state (xorshift).
+         */
+        private long seed;
+
+        /**
+         * The number of playouts run by the last search.
+         */
+        private long playouts;
+
+        /**
+         * The deepest node reached by the last search.
+         */
+        private int maxDepth;
+
+        /**
+         * Instantiates a new tree.
+         *
+         * @param capacity the number of nodes the tree can hold
+         * @param seed     the random number generator seed (not 0)
+         */
+        Tree(int capacity, long seed) {
+            firstChild = new int[capacity];
+            childCount = new byte[capacity];
+            move = new byte[capacity];
+            state = new byte[capacity];
+            visits = new int[capacity];
+            wins = new float[capacity];
+            this.seed = seed;
+        }
+
+        /**
+         * Grows the tree from a position until the deadline, or until the search is cancelled.
+         *
+         * @param root     the position
+         * @param player   the player to move
+         * @param deadline the time (from {@link System#nanoTime()}) to stop by
+         * @param listener asked if the search is cancelled, or {@code null} for never
+         */
+        void grow(BitBoard root, int player, long deadline, SearchListener listener) {
+            size = 1;
+            state[0] = LEAF;
+            visits[0] = 0;
+            wins[0] = 0;
+            playouts = 0;
+            maxDepth = 0;
+            if (root.isFull()) return;
+            do {
+                //a batch of playouts between checks of the clock
+                for (int i = 0; i < 64; i++) {
+                    iterate(root, player);
+                }
+            } while (System.nanoTime() < deadline && (listener == null || !listener.isCancelled()));
+        }
+
+        /**
+         * Runs one selection, expansion, playout and update.
+         *
+         * @param root   the position
+         * @param player the player to move at the root
+         */
+        private void iterate(BitBoard root, int player) {
+            board.copyFrom(root);
+            int node = 0;
+            int length = 0;
+            path[length++] = node;
+            int p = player;
+            int winner;
+            while (true) {
+                if (state[node] == WON) {
+                    //the player who moved into this node won
+                    winner = 3 - p;
+                    break;
+                }
+                if (state[node] == DRAWN) {
+                    winner = -1;
+                    break;
+                }
+                if (state[node] == LEAF) {
+                    //grow the tree once a node has been played through
+                    if (visits[node] == 0 || size + GameData.COLUMNS > firstChild.length) {
+                        winner = playout(p);
+                        break;
+                    }
+                    expand(node, p);
+                }
+                node = select(node);
+                board.play(move[node], p);
+                p = 3 - p;
+                path[length++] = node;
+            }
+            if (length - 1 > maxDepth) maxDepth = length - 1;
+
+            //update every node on the path, from the point of view of whoever moved into it
+            int mover = 3 - player;
+            for (int i = 0; i < length; i++) {
+                int n = path[i];
+                visits[n]++;
+                if (winner == mover) {
+                    wins[n] += 1;
+                } else if (winner == -1) {
+                    wins[n] += 0.5f;
+                }
+                mover = 3 - mover;
+            }
+            playouts++;
+        }
+
+        /**
+         * Creates the children of a node, one for each column that can be played.
+         *
+         * @param node the node
+         * @param p    the player to move at that node
+         */
+        private void expand(int node, int p) {
+            firstChild[node] = size;
+            childCount[node] = 0;
+            for (int i = 0; i < NegamaxSearch.COLUMN_ORDER.length; i++) {
+                int col = NegamaxSearch.COLUMN_ORDER[i];
+                if (!board.canPlay(col)) continue;
+                int child = size++;
+                move[child] = (byte) col;
+                visits[child] = 0;
+                wins[child] = 0;
+                state[child] = board.isWinningMove(col, p) ? WON
+                        : board.getMoves() + 1 == BitBoard.CELLS ? DRAWN : LEAF;
+                childCount[node]++;
+            }
+            state[node] = EXPANDED;
+        }
+
+        /**
+         * Picks the child to descend into: a winning move, then an unplayed move,
+         * then the move with the best upper confidence bound.
+         *
+         * @param node the node
+         * @return the child
+         */
+        private int select(int node) {
+            int first = firstChild[node];
+            int last = first + childCount[node];
+            float logVisits = (float) Math.log(visits[node]);
+            int best = first;
+            float bestValue = -1;
+            for (int c = first; c < last; c++) {
+                if (state[c] == WON || visits[c] == 0) return c;
+                float value = wins[c] / visits[c] + EXPLORATION * (float) Math.sqrt(logVisits / visits[c]);
+                if (value > bestValue) {
+                    bestValue = value;
+                    best = c;
+                }
+            }
+            return best;
+        }
+
+        /**
+         * Plays random moves on the board until the game ends.
+         *
+         * @param p the player to move
+         * @return the winner, or -1 for a draw
+         */
+        private int playout(int p) {
+            while (!board.isFull()) {
+                int col = nextRandom(GameData.COLUMNS);
+                while (!board.canPlay(col)) {
+                    col = col == GameData.COLUMNS - 1 ? 0 : col + 1;
+                }
+                if (board.isWinningMove(col, p)) return p;
+                board.play(col, p);
+                p = 3 - p;
+            }
+            return -1;
+        }
+
+        /**
+         * Generates a random number.
+         *
+         * @param bound the upper bound (exclusive)
+         * @return a number from 0 up to the bound
+         */
+        private int nextRandom(int bound) {
+            seed ^= seed << 13;
+            seed ^= seed >>> 7;
+            seed ^= seed << 17;
+            return (int) ((seed >>> 33) % bound);
+        }
+
+        /**
+         * Adds the visits and wins of the root's children to totals by column.
+         *
+         * @param visits the visits of each column
+         * @param wins   the wins of each column
+         */
+        void addRootStatistics(long[] visits, double[] wins) {
+            if (state[0] != EXPANDED) return;
+            for (int c = firstChild[0]; c < firstChild[0] + childCount[0]; c++) {
+                visits[move[c]] += this.visits[c];
+                wins[move[c]] += this.wins[c];
+            }
+        }
+    }
+
+    /**
+     * Compares the playout speed of the bitboard playouts with playouts through {@link GameEngine}
+     * (as the user interface plays moves), then searches the empty board.
+     *
+     * @param args the milliseconds to run each part for (optional)
+     */
+    public static void main(String[] args) {
+        long millis = args.length > 0 ? Long.parseLong(args[0]) : 1000;
+
+        //playouts through GameEngine, which checks for a winner after every move
+        Random random = new Random(1);
+        long engineGames = 0;
+        long start = System.nanoTime();
+        long end = start + millis * 1000000L;
+        while (System.nanoTime() < end) {
+            GameEngine game = new GameEngine();
+            while (game.getWinner() == 0) {
+                game.play(random.nextInt(GameData.COLUMNS));
+            }
+            engineGames++;
+        }
+        long engineNanos = System.nanoTime() - start;
+
+        //the tree search's own playouts
+        MonteCarloSearch single = new MonteCarloSearch(1, DEFAULT_CAPACITY);
+        SearchResult result = single.search(new BitBoard(), 1, millis);
+
+        System.out.println("GameEngine playouts: " + engineGames * 1000000000L / engineNanos + " playouts/s");
+        System.out.println("Tree search playouts (1 thread): " + result.nodesPerSecond() + " playouts/s");
+
+        int threads = Runtime.getRuntime().availableProcessors();
+        MonteCarloSearch parallel = new MonteCarloSearch(threads, DEFAULT_CAPACITY);
+        System.out.println("Empty board (" + threads + " threads): " + parallel.search(new BitBoard(), 1, millis));
+        parallel.shutdown();
+    }
+}
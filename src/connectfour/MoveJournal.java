@@ -0,0 +1,460 @@
+package connectfour;
+
+import java.awt.Color;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import javax.swing.SwingUtilities;
+
+/**
+ * An append-only journal of every move played, so a game in progress survives a crash.
+ * <p>
+ * Each move is one byte. Moves are gathered up and written by a background thread
+ * a few milliseconds later, many at a time with a single force to disk ("group commit").
+ * Once the journal grows past {@link #COMPACT_BYTES} it is compacted: the game it adds up to
+ * is written as a snapshot (in the binary save format) and the journal starts again, empty.
+ * <p>
+ * Journal layout: the magic number, version and the checksum of the snapshot it continues
+ * from (three ints, the checksum is 0 if there is no snapshot), then one byte per record:
+ * {@link #MOVE} plus the column, or {@link #RESET} for a new game.
+ * The snapshot is always written before the journal that continues from it, so after a crash
+ * between the two the old journal no longer matches and is ignored.
+ * <p>
+ * A checkpoint (a loaded game replacing the journaled one) waits in line with the moves as a
+ * {@link #CHECKPOINT} record, so the moves before it are written first and the moves after it
+ * continue from its snapshot.
+ * <p>
+ * Every read and write, including recovery at startup, happens on the journal's writer thread.
+ *
+ * @author elliot gorman
+ */
+final class MoveJournal {
+    /**
+     * The number identifying a journal file ("C4JN").
+     */
+    static final int MAGIC = 0x43344A4E;
+
+    /**
+     * The current file version.
+     */
+    static final int VERSION = 1;
+
+    /**
+     * The size of the header, in bytes.
+     */
+    static final int HEADER_BYTES = 12;
+
+    /**
+     * The record of a move, plus the column.
+     */
+    static final int MOVE = 0x10;
+
+    /**
+     * The record of a new game.
+     */
+    static final int RESET = 0x80;
+
+    /**
+     * The record of a checkpoint waiting to be written (never written to the journal itself).
+     */
+    static final int CHECKPOINT = 0x40;
+
+    /**
+     * How long moves are gathered before being written together, in milliseconds.
+     */
+    static final long COMMIT_DELAY = 20;
+
+    /**
+     * The journal size, in bytes, past which it is compacted into a snapshot.
+     */
+    static final long COMPACT_BYTES = 4096;
+
+    /**
+     * How long to wait for the journal to be written when the program exits, in milliseconds.
+     */
+    static final long EXIT_TIMEOUT = 2000;
+
+    /**
+     * The default location of the journal.
+     */
+    static final String DEFAULT_PATH = "connectfour/moves.journal";
+
+    /**
+     * The default location of the snapshot.
+     */
+    static final String DEFAULT_SNAPSHOT_PATH = "connectfour/journal.snapshot";
+
+    /**
+     * The location of the journal.
+     */
+    private final String path;
+
+    /**
+     * The location of the snapshot.
+     */
+    private final String snapshotPath;
+
+    /**
+     * The game the snapshot and the written records add up to (only used by the writer thread).
+     */
+    private final GameEngine committed = new GameEngine();
+
+    /**
+     * The first player's color, written into the snapshot.
+     */
+    private volatile Color playerOneColor = CirclePanel.DEFAULT_PLAYER_ONE_COLOR;
+
+    /**
+     * The second player's color, written into the snapshot.
+     */
+    private volatile Color playerTwoColor = CirclePanel.DEFAULT_PLAYER_TWO_COLOR;
+
+    /**
+     * The records waiting to be written.
+     */
+    private byte[] pending = new byte[64];
+
+    /**
+     * The number of records waiting to be written.
+     */
+    private int pendingCount;
+
+    /**
+     * The moves of each waiting checkpoint, in the order of their records.
+     */
+    private List<int[]> pendingCheckpoints = new ArrayList<int[]>();
+
+    /**
+     * Whether a write of the waiting records is already scheduled.
+     */
+    private boolean commitScheduled;
+
+    /**
+     * The open journal, or {@code null} if it can't be written (only used by the writer thread once recovered).
+     */
+    private FileChannel channel;
+
+    /**
+     * The thread the journal is written on.
+     */
+    private final ScheduledExecutorService writer = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+        //@Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, "Journal Writer");
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+
+    /**
+     * Instantiates a new journal, without reading or writing anything yet.
+     *
+     * @param path         the location of the journal
+     * @param snapshotPath the location of the snapshot
+     */
+    MoveJournal(String path, String snapshotPath) {
+        this.path = path;
+        this.snapshotPath = snapshotPath;
+        //write the last moves before the program exits
+        Runtime.getRuntime().addShutdownHook(new Thread("Journal Writer Shutdown") {
+            //@Override
+            public void run() {
+                flush(EXIT_TIMEOUT);
+            }
+        });
+    }
+
+    /**
+     * Restores the game the snapshot and journal add up to on the writer thread, then opens
+     * the journal for new moves and hands the game to the Event Dispatch Thread.
+     * Anything after the last whole, legal record (a write cut short by a crash) is cut off.
+     *
+     * @param listener told the recovered game, on the Event Dispatch Thread
+     */
+    void recover(final JournalListener listener) {
+        writer.execute(new Runnable() {
+            //@Override
+            public void run() {
+                recover();
+                final int[] moves = committed.getHistory();
+                SwingUtilities.invokeLater(new Runnable() {
+                    //@Override
+                    public void run() {
+                        listener.recovered(moves);
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * Restores the game the snapshot and journal add up to, then opens the journal
+     * for new moves (compacting it if it doesn't continue from the snapshot). Runs on the writer thread.
+     */
+    private void recover() {
+        int checksum = 0;
+        GameSave snapshot = new File(snapshotPath).exists() ? GameSave.read(snapshotPath) : null;
+        if (snapshot != null && snapshot.restore(committed)) {
+            checksum = checksum(snapshot);
+        }
+
+        try {
+            RandomAccessFile file = new RandomAccessFile(path, "rw");
+            channel = file.getChannel();
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+            while (header.hasRemaining() && channel.read(header, header.position()) > 0) {
+                //keep reading until the header is full
+            }
+            if (header.hasRemaining() || header.getInt(0) != MAGIC || header.getInt(4) != VERSION
+                    || header.getInt(8) != checksum) {
+                //missing, damaged or left over from before the last snapshot
+                compact();
+            } else {
+                replay();
+            }
+        } catch (IOException e) {
+            System.err.println("Unexpected I/O Error opening the move journal. Moves won't be journaled.");
+            close();
+        }
+    }
+
+    /**
+     * Plays the journal's records onto the snapshot, cutting off anything after the last good record.
+     *
+     * @throws IOException if the journal can't be read
+     */
+    private void replay() throws IOException {
+        ByteBuffer records = ByteBuffer.allocate((int) (channel.size() - HEADER_BYTES));
+        while (records.hasRemaining() && channel.read(records, HEADER_BYTES + records.position()) > 0) {
+            //keep reading until every record is read
+        }
+        records.flip();
+        int good = 0;
+        while (records.hasRemaining()) {
+            int record = records.get() & 0xFF;
+            if (record == RESET) {
+                committed.reset();
+            } else if (record - MOVE < 0 || record - MOVE >= GameData.COLUMNS || committed.play(record - MOVE) == -1) {
+                break;
+            }
+            good++;
+        }
+        if (good < records.limit()) {
+            System.err.println("Move journal cut short. Recovering the moves before...");
+            channel.truncate(HEADER_BYTES + good);
+        }
+        channel.position(HEADER_BYTES + good);
+    }
+
+    /**
+     * Setter for the player colors written into the snapshot from now on.
+     *
+     * @param playerOneColor the first player's color
+     * @param playerTwoColor the second player's color
+     */
+    void setColors(Color playerOneColor, Color playerTwoColor) {
+        this.playerOneColor = playerOneColor;
+        this.playerTwoColor = playerTwoColor;
+    }
+
+    /**
+     * Journals a move.
+     *
+     * @param col the column played
+     */
+    void move(int col) {
+        append(MOVE + col);
+    }
+
+    /**
+     * Journals the start of a new game.
+     */
+    void reset() {
+        append(RESET);
+    }
+
+    /**
+     * Adds a record to the ones waiting to be written, scheduling a write if needed.
+     *
+     * @param record the record
+     */
+    private synchronized void append(int record) {
+        if (pendingCount == pending.length) {
+            byte[] bigger = new byte[pending.length * 2];
+            System.arraycopy(pending, 0, bigger, 0, pendingCount);
+            pending = bigger;
+        }
+        pending[pendingCount++] = (byte) record;
+        if (!commitScheduled) {
+            commitScheduled = true;
+            writer.schedule(new Runnable() {
+                //@Override
+                public void run() {
+                    commit();
+                }
+            }, COMMIT_DELAY, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Replaces the journaled game with another one (such as a loaded game) by compacting
+     * the journal into a snapshot of it, once the moves journaled before it are written.
+     * Moves journaled after it continue from the snapshot.
+     *
+     * @param game the game
+     */
+    synchronized void checkpoint(GameEngine game) {
+        //queued with the moves, so the ones journaled before it are written before it
+        pendingCheckpoints.add(game.getHistory());
+        append(CHECKPOINT);
+    }
+
+    /**
+     * Writes every waiting record, in order, compacting the journal into a snapshot at each
+     * checkpoint. Runs on the writer thread.
+     */
+    private void commit() {
+        byte[] records;
+        int count;
+        List<int[]> checkpoints;
+        synchronized (this) {
+            records = pending;
+            count = pendingCount;
+            checkpoints = pendingCheckpoints;
+            pending = new byte[records.length];
+            pendingCount = 0;
+            pendingCheckpoints = new ArrayList<int[]>();
+            commitScheduled = false;
+        }
+
+        int start = 0;
+        int checkpoint = 0;
+        for (int i = 0; i < count; i++) {
+            if ((records[i] & 0xFF) == CHECKPOINT) {
+                write(records, start, i);
+                committed.replay(checkpoints.get(checkpoint++));
+                compact();
+                start = i + 1;
+            }
+        }
+        write(records, start, count);
+    }
+
+    /**
+     * Writes some of the waiting records with one force to disk, then compacts the journal if it
+     * has grown too long. Runs on the writer thread.
+     *
+     * @param records the waiting records
+     * @param from    the first record to write
+     * @param to      the record after the last one to write
+     */
+    private void write(byte[] records, int from, int to) {
+        if (from == to || channel == null) return;
+
+        for (int i = from; i < to; i++) {
+            int record = records[i] & 0xFF;
+            if (record == RESET) {
+                committed.reset();
+            } else {
+                committed.play(record - MOVE);
+            }
+        }
+        try {
+            ByteBuffer buffer = ByteBuffer.wrap(records, from, to - from);
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(false);
+            if (channel.size() > COMPACT_BYTES) {
+                compact();
+            }
+        } catch (IOException e) {
+            System.err.println("Unexpected I/O Error writing the move journal. Moves won't be journaled.");
+            close();
+        }
+    }
+
+    /**
+     * Writes the journaled game as the snapshot, then starts a new, empty journal continuing from it.
+     * Runs on the writer thread.
+     */
+    private void compact() {
+        try {
+            GameSave snapshot = new GameSave(committed.getHistory(), committed.getPlayer(),
+                    playerOneColor, playerTwoColor);
+            SaveWriter.write(snapshotPath, snapshot.toBytes());
+
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+            header.putInt(MAGIC).putInt(VERSION).putInt(checksum(snapshot));
+            if (channel != null) {
+                channel.close();
+            }
+            SaveWriter.write(path, header.array());
+            channel = new RandomAccessFile(path, "rw").getChannel();
+            channel.position(HEADER_BYTES);
+        } catch (IOException e) {
+            System.err.println("Unexpected I/O Error compacting the move journal. Moves won't be journaled.");
+            close();
+        }
+    }
+
+    /**
+     * Waits for every record journaled so far to be written.
+     *
+     * @param timeoutMillis the longest to wait, in milliseconds
+     * @return {@code true} if every record was written in time
+     */
+    boolean flush(long timeoutMillis) {
+        try {
+            writer.submit(new Runnable() {
+                //@Override
+                public void run() {
+                    commit();
+                }
+            }).get(timeoutMillis, TimeUnit.MILLISECONDS);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            System.err.println("Move journal writer failed: " + e.getCause());
+        } catch (TimeoutException e) {
+            System.err.println("Timed out waiting for the move journal to be written.");
+        }
+        return false;
+    }
+
+    /**
+     * Stops journaling after an error.
+     */
+    private void close() {
+        try {
+            if (channel != null) {
+                channel.close();
+            }
+        } catch (IOException e) {
+            System.err.println("Unexpected I/O Error closing the move journal.");
+        }
+        channel = null;
+    }
+
+    /**
+     * Gets the checksum of a snapshot, which ties a journal to the snapshot it continues from.
+     *
+     * @param snapshot the snapshot
+     * @return the checksum stored at the end of the snapshot's bytes
+     */
+    private static int checksum(GameSave snapshot) {
+        byte[] bytes = snapshot.toBytes();
+        return ByteBuffer.wrap(bytes).getInt(bytes.length - GameSave.CHECKSUM_BYTES);
+    }
+}
@@ -0,0 +1,25 @@
+package connectfour;
+
+/**
+ * Hears back from the computer player while it thinks on its own thread, and once it has chosen.
+ * Both methods are called on the Event Dispatch Thread, and neither is called once the
+ * computer has been stopped (see {@link ComputerPlayer#cancel()}).
+ *
+ * @author elliot gorman
+ */
+interface MoveListener {
+    /**
+     * Called with the latest best move so far, every {@link ComputerPlayer#UPDATE_INTERVAL} milliseconds
+     * that it has improved.
+     *
+     * @param result the best move so far, and the depth searched to find it
+     */
+    void thinking(SearchResult result);
+
+    /**
+     * Called once the computer has chosen its move, if the game is still in the position it searched.
+     *
+     * @param result the search result, or {@code null} if there are no moves left
+     */
+    void chosen(SearchResult result);
+}
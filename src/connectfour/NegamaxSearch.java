@@ -0,0 +1,311 @@
+package connectfour;
+
+/**
+ * Finds the computer's move with a negamax search using alpha-beta pruning.
+ * The search deepens one move at a time until the time budget runs out, and the
+ * move from the deepest completed depth is returned. Results are kept in a
+ * transposition table, so positions reached by different move orders are only searched once
+ * and each depth starts from the best moves of the last.
+ *
+ * @author elliot gorman
+ */
+final class NegamaxSearch {
+    /**
+     * The score of winning on the very first move, wins further away score less.
+     */
+    static final int WIN_SCORE = 1000;
+
+    /**
+     * Any score at least this large is a forced win (or a forced loss if negated).
+     */
+    static final int WIN_THRESHOLD = WIN_SCORE - BitBoard.CELLS - 1;
+
+    /**
+     * The columns in the order they are searched, center first.
+     */
+    static final int[] COLUMN_ORDER = columnOrder();
+
+    /**
+     * How many positions are visited between checks of the clock.
+     */
+    private static final int CLOCK_CHECK_INTERVAL = 1024;
+
+    /**
+     * The table of earlier results (may be shared with other searches), or {@code null} for none.
+     */
+    private final TranspositionTable table;
+
+    /**
+     * The number of this search when several share a table (0 for the main search).
+     * Helper searches vary their move order and depths so they fill the table
+     * with different parts of the tree.
+     */
+    private final int helper;
+
+    /**
+     * Set by another thread to end the search early.
+     */
+    private volatile boolean stopped;
+
+    /**
+     * The board being searched (a copy, moves are played and undone on it).
+     */
+    private BitBoard board;
+
+    /**
+     * Told the best move after each depth and asked if the search is cancelled, or {@code null} for none.
+     */
+    private SearchListener listener;
+
+    /**
+     * The number of positions visited.
+     */
+    private long nodes;
+
+    /**
+     * The time (from {@link System#nanoTime()}) the search must stop by.
+     */
+    private long deadline;
+
+    /**
+     * Set once the deadline has passed, unwinds the search.
+     */
+    private boolean aborted;
+
+    /**
+     * Instantiates a new search.
+     *
+     * @param table the table of earlier results, or {@code null} for none
+     */
+    NegamaxSearch(TranspositionTable table) {
+        this(table, 0);
+    }
+
+    /**
+     * Instantiates a new search, which may be one of several sharing a table.
+     *
+     * @param table  the table of earlier results, or {@code null} for none
+     * @param helper the number of this search (0 for the main search)
+     */
+    NegamaxSearch(TranspositionTable table, int helper) {
+        this.table = table;
+        this.helper = helper;
+    }
+
+    /**
+     * Setter for the stop flag, which may be called from any thread.
+     * A stopped search returns the result of its deepest completed depth.
+     *
+     * @param stopped {@code true} to stop the search, {@code false} before starting it again
+     */
+    void setStopped(boolean stopped) {
+        this.stopped = stopped;
+    }
+
+    /**
+     * Builds the center first column order.
+     *
+     * @return the column order
+     */
+    private static int[] columnOrder() {
+        int[] order = new int[GameData.COLUMNS];
+        for (int i = 0; i < GameData.COLUMNS; i++) {
+            //alternates either side of the center: 3, 2, 4, 1, 5, 0, 6
+            order[i] = GameData.COLUMNS / 2 + (1 - 2 * (i % 2)) * (i + 1) / 2;
+        }
+        return order;
+    }
+
+    /**
+     * Searches a position for the best move.
+     *
+     * @param position     the position (not changed)
+     * @param player       the player to move (either 1 or 2)
+     * @param budgetMillis how long the search may take, in milliseconds
+     * @return the best move found, or {@code null} if the board is full
+     */
+    SearchResult search(BitBoard position, int player, long budgetMillis) {
+        return search(position, player, budgetMillis, null);
+    }
+
+    /**
+     * Searches a position for the best move, reporting the best move after each completed depth.
+     *
+     * @param position     the position (not changed)
+     * @param player       the player to move (either 1 or 2)
+     * @param budgetMillis how long the search may take, in milliseconds
+     * @param listener     told the best move after each depth and asked if the search is cancelled,
+     *                     or {@code null} for none
+     * @return the best move found, or {@code null} if the board is full
+     */
+    SearchResult search(BitBoard position, int player, long budgetMillis, SearchListener listener) {
+        long start = System.nanoTime();
+        this.listener = listener;
+        board = new BitBoard(position);
+        nodes = 0;
+        deadline = start + budgetMillis * 1000000L;
+        aborted = false;
+        if (table != null && helper == 0) {
+            table.newSearch();
+        }
+
+        int[] order = COLUMN_ORDER.clone();
+        //helpers start from a different column
+        for (int i = 0; i < helper % order.length; i++) {
+            moveToFront(order, order[order.length - 1]);
+        }
+        int bestMove = -1;
+        int bestScore = 0;
+        int completedDepth = 0;
+        for (int i = 0; i < order.length && bestMove == -1; i++) {
+            if (board.canPlay(order[i])) bestMove = order[i];
+        }
+        if (bestMove == -1) {
+            return null;
+        }
+
+        //iterative deepening, until time runs out or the result is decided
+        int remaining = BitBoard.CELLS - board.getMoves();
+        for (int depth = 1 + helper % 2; depth <= remaining; depth++) {
+            int alpha = -WIN_SCORE;
+            int move = -1;
+            for (int i = 0; i < order.length; i++) {
+                int col = order[i];
+                if (!board.canPlay(col)) continue;
+                int score;
+                if (board.isWinningMove(col, player)) {
+                    score = WIN_SCORE - board.getMoves() - 1;
+                } else {
+                    board.play(col, player);
+                    score = -negamax(3 - player, depth - 1, -WIN_SCORE, -alpha);
+                    board.undo(col);
+                }
+                if (aborted) break;
+                if (move == -1 || score > alpha) {
+                    alpha = score;
+                    move = col;
+                }
+            }
+            if (aborted) break;
+
+            bestMove = move;
+            bestScore = alpha;
+            completedDepth = depth;
+            if (listener != null) {
+                listener.improved(new SearchResult(bestMove, bestScore, completedDepth, nodes, System.nanoTime() - start));
+            }
+            //search the best move first next time
+            moveToFront(order, move);
+            if (Math.abs(alpha) >= WIN_THRESHOLD) break;
+        }
+        return new SearchResult(bestMove, bestScore, completedDepth, nodes, System.nanoTime() - start);
+    }
+
+    /**
+     * The negamax search with alpha-beta pruning.
+     *
+     * @param player the player to move
+     * @param depth  the number of moves left to look ahead
+     * @param alpha  the score the player to move is already guaranteed
+     * @param beta   the score the opponent is already guaranteed (negated)
+     * @return the score of the position for the player to move
+     */
+    private int negamax(int player, int depth, int alpha, int beta) {
+        if (++nodes % CLOCK_CHECK_INTERVAL == 0 && (stopped || System.nanoTime() > deadline
+                || (listener != null && listener.isCancelled()))) {
+            aborted = true;
+        }
+        if (aborted) return 0;
+        if (board.isFull()) return 0;
+
+        //take any immediate win
+        for (int col = 0; col < GameData.COLUMNS; col++) {
+            if (board.canPlay(col) && board.isWinningMove(col, player)) {
+                return WIN_SCORE - board.getMoves() - 1;
+            }
+        }
+        if (depth == 0) return evaluate(player);
+
+        //use (or narrow the window with) an earlier result for this position
+        long key = 0;
+        boolean mirrored = false;
+        int tableMove = -1;
+        if (table != null) {
+            key = TranspositionTable.key(board, player);
+            mirrored = board.isMirrored();
+            long entry = table.probe(key);
+            if (entry != 0) {
+                tableMove = TranspositionTable.move(entry);
+                //the entry may be for the mirror image
+                if (mirrored && tableMove >= 0) {
+                    tableMove = BitBoard.mirrorColumn(tableMove);
+                }
+                if (TranspositionTable.depth(entry) >= depth) {
+                    int score = TranspositionTable.score(entry);
+                    int flag = TranspositionTable.flag(entry);
+                    if (flag == TranspositionTable.EXACT) return score;
+                    if (flag == TranspositionTable.LOWER && score > alpha) alpha = score;
+                    if (flag == TranspositionTable.UPPER && score < beta) beta = score;
+                    if (alpha >= beta) return score;
+                }
+            }
+        }
+
+        int originalAlpha = alpha;
+        int bestScore = -WIN_SCORE;
+        int bestMove = -1;
+        //the table's best move first, then center first
+        for (int i = -1; i < COLUMN_ORDER.length; i++) {
+            int col = i < 0 ? tableMove : COLUMN_ORDER[i];
+            if (col < 0 || (i >= 0 && col == tableMove) || !board.canPlay(col)) continue;
+            board.play(col, player);
+            int score = -negamax(3 - player, depth - 1, -beta, -alpha);
+            board.undo(col);
+            if (aborted) return 0;
+            if (score > bestScore) {
+                bestScore = score;
+                bestMove = col;
+            }
+            if (score > alpha) alpha = score;
+            if (alpha >= beta) break;
+        }
+
+        if (table != null) {
+            int flag = bestScore <= originalAlpha ? TranspositionTable.UPPER
+                    : bestScore >= beta ? TranspositionTable.LOWER : TranspositionTable.EXACT;
+            table.store(key, mirrored && bestMove >= 0 ? BitBoard.mirrorColumn(bestMove) : bestMove,
+                    bestScore, depth, flag);
+        }
+        return bestScore;
+    }
+
+    /**
+     * Estimates how good a position is for the player to move,
+     * from the cells each player threatens to win on and control of the center column.
+     *
+     * @param player the player to move
+     * @return the estimated score (always well inside the forced win scores)
+     */
+    private int evaluate(int player) {
+        long mine = board.getPieces(player);
+        long theirs = board.getPieces(3 - player);
+        long mask = board.getMask();
+        int threats = Long.bitCount(BitBoard.winningCells(mine, mask)) - Long.bitCount(BitBoard.winningCells(theirs, mask));
+        long center = ((1L << GameData.ROWS) - 1) << (GameData.COLUMNS / 2 * BitBoard.COLUMN_BITS);
+        int centerPieces = Long.bitCount(mine & center) - Long.bitCount(theirs & center);
+        return 4 * threats + centerPieces;
+    }
+
+    /**
+     * Moves a column to the front of a column order, keeping the rest in order.
+     *
+     * @param order the column order
+     * @param col   the column
+     */
+    private static void moveToFront(int[] order, int col) {
+        int i = 0;
+        while (order[i] != col) i++;
+        System.arraycopy(order, 0, order, 1, i);
+        order[0] = col;
+    }
+}
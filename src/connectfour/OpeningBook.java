@@ -0,0 +1,204 @@
+package connectfour;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * A precomputed book of the best move in every early position, read straight from a
+ * memory-mapped file. The file isn't opened until the first lookup, and lookups are a
+ * binary search over the mapped entries, so they allocate nothing.
+ * <p>
+ * File layout: a header of the magic number, version, ply depth, entry count and the search time
+ * each position was given in milliseconds (five ints), then one entry per position, sorted by key: the position key (long), best column (byte),
+ * search depth (byte) and score (short). A position and its mirror image share an entry, whose
+ * column is for whichever of the two has the smaller key (see {@link BitBoard#isMirrored()}).
+ *
+ * @author elliot gorman
+ */
+final class OpeningBook {
+    /**
+     * The number identifying a book file ("C4BK").
+     */
+    static final int MAGIC = 0x4334424B;
+
+    /**
+     * The current file version.
+     */
+    static final int VERSION = 3;
+
+    /**
+     * The size of the header, in bytes.
+     */
+    static final int HEADER_BYTES = 20;
+
+    /**
+     * The size of each entry, in bytes.
+     */
+    static final int ENTRY_BYTES = 12;
+
+    /**
+     * The location of the book file.
+     */
+    private final String path;
+
+    /**
+     * The mapped file, or {@code null} if not loaded (or missing).
+     */
+    private MappedByteBuffer buffer;
+
+    /**
+     * The number of entries.
+     */
+    private int entries;
+
+    /**
+     * The deepest ply the book covers.
+     */
+    private int plies;
+
+    /**
+     * The search time each position was given when the book was built, in milliseconds.
+     */
+    private long budget;
+
+    /**
+     * Whether loading has been attempted.
+     */
+    private boolean loaded;
+
+    /**
+     * Instantiates a new book, without reading the file yet.
+     *
+     * @param path the location of the book file
+     */
+    OpeningBook(String path) {
+        this.path = path;
+    }
+
+    /**
+     * Maps the book file into memory, once.
+     *
+     * @return {@code true} if the book is available
+     */
+    private synchronized boolean load() {
+        if (loaded) return buffer != null;
+        loaded = true;
+        if (!new File(path).exists()) {
+            System.err.println("Opening book not found. Searching every move...");
+            return false;
+        }
+        RandomAccessFile file = null;
+        try {
+            file = new RandomAccessFile(path, "r");
+            FileChannel channel = file.getChannel();
+            MappedByteBuffer map = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (map.capacity() < HEADER_BYTES || map.getInt(0) != MAGIC || map.getInt(4) != VERSION
+                    || map.capacity() < HEADER_BYTES + (long) map.getInt(12) * ENTRY_BYTES) {
+                System.err.println("Couldn't properly parse the opening book. Searching every move...");
+                return false;
+            }
+            plies = map.getInt(8);
+            entries = map.getInt(12);
+            budget = map.getInt(16);
+            buffer = map;
+            return true;
+        } catch (IOException e) {
+            System.err.println("Unexpected I/O Error loading the opening book. Searching every move...");
+            return false;
+        } finally {
+            //the mapping stays valid once the file is closed
+            try {
+                if (file != null) {
+                    file.close();
+                }
+            } catch (IOException e) {
+                System.err.println("Unexpected I/O Error loading the opening book.");
+            }
+        }
+    }
+
+    /**
+     * Finds a position in the book.
+     *
+     * @param key the position key (see {@link TranspositionTable#key(BitBoard, int)})
+     * @return the index of the entry, or -1 if the position isn't in the book
+     */
+    int find(long key) {
+        if (!load()) return -1;
+        int low = 0;
+        int high = entries - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            long k = buffer.getLong(HEADER_BYTES + mid * ENTRY_BYTES);
+            if (k < key) {
+                low = mid + 1;
+            } else if (k > key) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Gets the best column of an entry, which must be mirrored for positions whose
+     * mirror image has the smaller key.
+     *
+     * @param index the entry index
+     * @return the column
+     */
+    int getMove(int index) {
+        return buffer.get(HEADER_BYTES + index * ENTRY_BYTES + 8);
+    }
+
+    /**
+     * Gets the search depth of an entry.
+     *
+     * @param index the entry index
+     * @return the depth the move was searched to
+     */
+    int getDepth(int index) {
+        return buffer.get(HEADER_BYTES + index * ENTRY_BYTES + 9) & 0xFF;
+    }
+
+    /**
+     * Gets the score of an entry, from the point of view of the player to move.
+     *
+     * @param index the entry index
+     * @return the score
+     */
+    int getScore(int index) {
+        return buffer.getShort(HEADER_BYTES + index * ENTRY_BYTES + 10);
+    }
+
+    /**
+     * Getter for the number of positions in the book.
+     *
+     * @return the entry count (0 if the book isn't available)
+     */
+    int size() {
+        return load() ? entries : 0;
+    }
+
+    /**
+     * Getter for the deepest ply the book covers.
+     *
+     * @return the number of moves into the game the book reaches
+     */
+    int getPlies() {
+        return load() ? plies : 0;
+    }
+
+    /**
+     * Getter for the search time each position was given when the book was built.
+     *
+     * @return the time in milliseconds (0 if the book isn't available)
+     */
+    long getBudget() {
+        return load() ? budget : 0;
+    }
+}
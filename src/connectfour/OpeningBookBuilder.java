@@ -0,0 +1,156 @@
+package connectfour;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * The tool which precomputes the opening book, by searching every position
+ * up to a number of moves into the game and writing the best moves to a book file.
+ * <p>
+ * Usage (from the src folder):
+ * {@code java connectfour.OpeningBookBuilder [plies] [milliseconds per position] [book file]}
+ *
+ * @author elliot gorman
+ */
+final class OpeningBookBuilder {
+    /**
+     * The default number of moves into the game the book covers.
+     */
+    static final int DEFAULT_PLIES = 4;
+
+    /**
+     * The default search time for each position, in milliseconds. The book is only played while
+     * the computer's think time is no longer than this, so it matches the longest think time.
+     */
+    static final long DEFAULT_BUDGET = 2000;
+
+    /**
+     * The default location of the book file.
+     */
+    static final String DEFAULT_PATH = "connectfour/opening.book";
+
+    /**
+     * Hides the default public constructor.
+     */
+    private OpeningBookBuilder() {
+        throw new IllegalStateException("Utility Class");
+    }
+
+    /**
+     * Builds the book.
+     *
+     * @param args the plies, the milliseconds per position and the book file (all optional)
+     */
+    public static void main(String[] args) {
+        int plies = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_PLIES;
+        long budget = args.length > 1 ? Long.parseLong(args[1]) : DEFAULT_BUDGET;
+        String path = args.length > 2 ? args[2] : DEFAULT_PATH;
+
+        //find every distinct position (mirror images are the same position)
+        List<BitBoard> positions = new ArrayList<BitBoard>();
+        collect(new BitBoard(), plies, new HashSet<Long>(), positions);
+        System.out.println(positions.size() + " positions up to " + plies + " moves, "
+                + budget + " ms each");
+
+        //search each of them
+        TranspositionTable table = new TranspositionTable(ComputerPlayer.DEFAULT_TABLE_MEGABYTES);
+        NegamaxSearch search = new NegamaxSearch(table);
+        List<long[]> entries = new ArrayList<long[]>();
+        for (int i = 0; i < positions.size(); i++) {
+            BitBoard board = positions.get(i);
+            int player = playerToMove(board);
+            SearchResult result = search.search(board, player, budget);
+            //the move is stored for whichever of the position and its mirror image has the smaller key
+            int move = board.isMirrored() ? BitBoard.mirrorColumn(result.getMove()) : result.getMove();
+            entries.add(new long[]{TranspositionTable.key(board, player),
+                    move, result.getDepth(), result.getScore()});
+            if ((i + 1) % 100 == 0) {
+                System.out.println((i + 1) + " / " + positions.size());
+            }
+        }
+
+        //sort by key, for the binary search
+        Collections.sort(entries, new Comparator<long[]>() {
+            //@Override
+            public int compare(long[] a, long[] b) {
+                return a[0] < b[0] ? -1 : a[0] > b[0] ? 1 : 0;
+            }
+        });
+
+        try {
+            write(path, plies, budget, entries);
+            System.out.println("Wrote " + entries.size() + " positions to " + path);
+        } catch (IOException e) {
+            System.err.println("Unexpected I/O Error writing the opening book.");
+        }
+    }
+
+    /**
+     * Collects every position reachable within a number of moves, skipping finished games.
+     *
+     * @param board     the current position (played on, then restored)
+     * @param plies     the number of moves into the game to stop at
+     * @param seen      the keys of the positions already collected
+     * @param positions the collected positions
+     */
+    private static void collect(BitBoard board, int plies, Set<Long> seen, List<BitBoard> positions) {
+        int player = playerToMove(board);
+        if (!seen.add(Long.valueOf(TranspositionTable.key(board, player)))) return;
+        positions.add(new BitBoard(board));
+        if (board.getMoves() == plies) return;
+
+        for (int col = 0; col < GameData.COLUMNS; col++) {
+            if (!board.canPlay(col) || board.isWinningMove(col, player)) continue;
+            board.play(col, player);
+            collect(board, plies, seen, positions);
+            board.undo(col);
+        }
+    }
+
+    /**
+     * Works out whose turn it is from the number of moves played.
+     *
+     * @param board the board
+     * @return the player to move
+     */
+    static int playerToMove(BitBoard board) {
+        return board.getMoves() % 2 == 0 ? 1 : 2;
+    }
+
+    /**
+     * Writes the book file.
+     *
+     * @param path    the location of the book file
+     * @param plies   the number of moves into the game the book covers
+     * @param budget  the search time each position was given, in milliseconds
+     * @param entries the sorted entries (key, column, depth, score)
+     * @throws IOException if the file can't be written
+     */
+    private static void write(String path, int plies, long budget, List<long[]> entries) throws IOException {
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(path)));
+        try {
+            out.writeInt(OpeningBook.MAGIC);
+            out.writeInt(OpeningBook.VERSION);
+            out.writeInt(plies);
+            out.writeInt(entries.size());
+            out.writeInt((int) budget);
+            for (int i = 0; i < entries.size(); i++) {
+                long[] entry = entries.get(i);
+                out.writeLong(entry[0]);
+                out.writeByte((int) entry[1]);
+                out.writeByte((int) entry[2]);
+                out.writeShort((int) entry[3]);
+            }
+        } finally {
+            out.close();
+        }
+    }
+}
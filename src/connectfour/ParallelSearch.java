@@ -0,0 +1,244 @@
+package connectfour;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Runs several searches at once over one shared transposition table ("lazy SMP").
+ * The main search runs on the calling thread while helper threads search the same
+ * position in a slightly different order, filling the table with results the main
+ * search can reuse, so the same time budget reaches a deeper search.
+ * <p>
+ * Usage (from the src folder): {@code java connectfour.ParallelSearch [threads] [milliseconds]}
+ * measures the real speedup: the time the main search takes to complete each depth on one
+ * thread, against on every thread, on a few positions.
+ *
+ * @author elliot gorman
+ */
+final class ParallelSearch {
+    /**
+     * The searches, the main search first.
+     */
+    private final NegamaxSearch[] searches;
+
+    /**
+     * The threads the helper searches run on, or {@code null} for a single thread.
+     */
+    private final ExecutorService helpers;
+
+    /**
+     * Instantiates a new parallel search.
+     *
+     * @param table   the table shared by every thread
+     * @param threads the number of threads (including the calling thread)
+     */
+    ParallelSearch(TranspositionTable table, int threads) {
+        searches = new NegamaxSearch[Math.max(1, threads)];
+        for (int i = 0; i < searches.length; i++) {
+            searches[i] = new NegamaxSearch(table, i);
+        }
+        helpers = searches.length == 1 ? null : Executors.newFixedThreadPool(searches.length - 1, new ThreadFactory() {
+            //@Override
+            public Thread newThread(Runnable r) {
+                //helper threads never keep the program running
+                Thread thread = new Thread(r, "Search Helper");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    /**
+     * Getter for the number of threads.
+     *
+     * @return the thread count
+     */
+    int getThreads() {
+        return searches.length;
+    }
+
+    /**
+     * Searches a position for the best move on every thread.
+     *
+     * @param position     the position (not changed)
+     * @param player       the player to move (either 1 or 2)
+     * @param budgetMillis how long the search may take, in milliseconds
+     * @return the result of the deepest search, with the nodes of every thread,
+     * or {@code null} if the board is full
+     */
+    SearchResult search(BitBoard position, int player, long budgetMillis) {
+        return search(position, player, budgetMillis, null);
+    }
+
+    /**
+     * Searches a position for the best move on every thread, reporting the main search's
+     * best move after each of its completed depths. A cancelled main search stops the helpers too.
+     *
+     * @param position     the position (not changed)
+     * @param player       the player to move (either 1 or 2)
+     * @param budgetMillis how long the search may take, in milliseconds
+     * @param listener     told the best move after each depth and asked if the search is cancelled,
+     *                     or {@code null} for none
+     * @return the result of the deepest search, with the nodes of every thread,
+     * or {@code null} if the board is full
+     */
+    SearchResult search(final BitBoard position, final int player, final long budgetMillis,
+                        SearchListener listener) {
+        long start = System.nanoTime();
+        List<Future<SearchResult>> futures = new ArrayList<Future<SearchResult>>();
+        SearchResult best = null;
+        SearchResult[] results;
+        try {
+            for (int i = 1; i < searches.length; i++) {
+                final NegamaxSearch search = searches[i];
+                search.setStopped(false);
+                futures.add(helpers.submit(new Callable<SearchResult>() {
+                    //@Override
+                    public SearchResult call() {
+                        return search.search(position, player, budgetMillis);
+                    }
+                }));
+            }
+            best = searches[0].search(position, player, budgetMillis, listener);
+        } finally {
+            //the main search is done (or never started), so the helpers stop too
+            results = stopHelpers(futures);
+        }
+        if (best == null || searches.length == 1) return best;
+
+        long mainNodes = best.getNodes();
+        long nodes = mainNodes;
+        for (int i = 0; i < results.length; i++) {
+            SearchResult result = results[i];
+            if (result == null) continue;
+            nodes += result.getNodes();
+            //prefer whichever thread got the deepest
+            if (result.getDepth() > best.getDepth()) {
+                best = result;
+            }
+        }
+        return new SearchResult(best.getMove(), best.getScore(), best.getDepth(), nodes,
+                System.nanoTime() - start, searches.length, mainNodes == 0 ? 1 : (double) nodes / mainNodes, "nodes");
+    }
+
+    /**
+     * Stops every helper search and waits for them to finish.
+     *
+     * @param futures the helper searches
+     * @return their results, {@code null} for any that failed
+     */
+    private SearchResult[] stopHelpers(List<Future<SearchResult>> futures) {
+        for (int i = 1; i < searches.length; i++) {
+            searches[i].setStopped(true);
+        }
+        SearchResult[] results = new SearchResult[futures.size()];
+        for (int i = 0; i < futures.size(); i++) {
+            results[i] = get(futures.get(i));
+        }
+        return results;
+    }
+
+    /**
+     * Waits for a helper search to finish.
+     *
+     * @param future the helper search
+     * @return its result, or {@code null} if it failed
+     */
+    private static SearchResult get(Future<SearchResult> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            System.err.println("Search helper failed: " + e.getCause());
+        }
+        return null;
+    }
+
+    /**
+     * Stops the helper threads once they are no longer needed.
+     */
+    void shutdown() {
+        if (helpers != null) {
+            helpers.shutdown();
+        }
+    }
+
+    /**
+     * The positions the speedup is measured on, as the columns played (1 to 7).
+     */
+    private static final String[] BENCHMARK_POSITIONS = {"", "44", "4453", "4435", "4444326"};
+
+    /**
+     * Measures the speedup of searching on several threads: the time to complete the deepest
+     * depth both searches reached, on one thread divided by on every thread.
+     *
+     * @param args the number of threads (optional, one per processor by default)
+     *             then the time for each search in milliseconds (optional)
+     */
+    public static void main(String[] args) {
+        int threads = args.length > 0 ? Integer.parseInt(args[0]) : ComputerPlayer.DEFAULT_THREADS;
+        long budget = args.length > 1 ? Long.parseLong(args[1]) : 2000;
+        double totalSpeedup = 0;
+        int measured = 0;
+        for (int p = 0; p < BENCHMARK_POSITIONS.length; p++) {
+            BitBoard board = new BitBoard();
+            int player = 1;
+            for (int i = 0; i < BENCHMARK_POSITIONS[p].length(); i++) {
+                board.play(BENCHMARK_POSITIONS[p].charAt(i) - '1', player);
+                player = 3 - player;
+            }
+            long[] single = timeToDepth(board, player, 1, budget);
+            long[] parallel = timeToDepth(board, player, threads, budget);
+            //the deepest depth both completed
+            int depth = Math.min(single.length, parallel.length) - 1;
+            while (depth > 0 && (single[depth] == 0 || parallel[depth] == 0)) {
+                depth--;
+            }
+            if (depth == 0) continue;
+            double speedup = (double) single[depth] / parallel[depth];
+            totalSpeedup += speedup;
+            measured++;
+            System.out.println("POSITION \"" + BENCHMARK_POSITIONS[p] + "\": depth " + depth + " in "
+                    + single[depth] / 1000000 + " ms on 1 thread, " + parallel[depth] / 1000000 + " ms on "
+                    + threads + " threads (" + Math.round(speedup * 100) / 100.0 + "x speedup)");
+        }
+        if (measured > 0) {
+            System.out.println("MEAN SPEEDUP " + Math.round(totalSpeedup / measured * 100) / 100.0 + "x on "
+                    + threads + " threads");
+        }
+    }
+
+    /**
+     * Times the main search completing each depth, with a new table.
+     *
+     * @param board   the position
+     * @param player  the player to move
+     * @param threads the number of threads
+     * @param budget  the time for the search, in milliseconds
+     * @return the time each depth was completed by (in nanoseconds, 0 if it wasn't), by depth
+     */
+    private static long[] timeToDepth(BitBoard board, int player, int threads, long budget) {
+        final long[] times = new long[BitBoard.CELLS + 1];
+        ParallelSearch search = new ParallelSearch(new TranspositionTable(ComputerPlayer.DEFAULT_TABLE_MEGABYTES), threads);
+        search.search(board, player, budget, new SearchListener() {
+            //@Override
+            public void improved(SearchResult result) {
+                times[result.getDepth()] = result.getNanos();
+            }
+
+            //@Override
+            public boolean isCancelled() {
+                return false;
+            }
+        });
+        search.shutdown();
+        return times;
+    }
+}
@@ -0,0 +1,26 @@
+package connectfour;
+
+import java.io.IOException;
+
+/**
+ * Hears back from the background save writer once a save has been written, or has failed.
+ * Both methods are called on the Event Dispatch Thread.
+ *
+ * @author elliot gorman
+ */
+interface SaveListener {
+    /**
+     * Called once the save is safely on disk.
+     *
+     * @param path the filepath saved to
+     */
+    void saved(String path);
+
+    /**
+     * Called if the save couldn't be written, in which case the previous save is kept.
+     *
+     * @param path the filepath saved to
+     * @param e    the error
+     */
+    void failed(String path, IOException e);
+}
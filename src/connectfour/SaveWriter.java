@@ -0,0 +1,210 @@
+package connectfour;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import javax.swing.SwingUtilities;
+
+/**
+ * Writes save files safely, and off the Event Dispatch Thread.
+ * <p>
+ * Every file is written to a temporary file next to it, forced to disk, then renamed over
+ * the old file in one step, so a crash part way through always leaves either the old save
+ * or the new one. Saves requested with {@link #writeLater(String, byte[], SaveListener)} are
+ * written by one background thread; if a file is saved again before the thread gets to it,
+ * only the newest contents are written.
+ *
+ * @author elliot gorman
+ */
+final class SaveWriter {
+    /**
+     * How long to wait for pending saves when the program exits, in milliseconds.
+     */
+    static final long EXIT_TIMEOUT = 5000;
+
+    /**
+     * The saves waiting to be written, by filepath.
+     */
+    private static final Map<String, Request> pending = new HashMap<String, Request>();
+
+    /**
+     * The background thread the saves are written on.
+     */
+    private static final ExecutorService writer = Executors.newSingleThreadExecutor(new ThreadFactory() {
+        //@Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, "Save Writer");
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+
+    static {
+        //finish writing any pending saves before the program exits
+        Runtime.getRuntime().addShutdownHook(new Thread("Save Writer Shutdown") {
+            //@Override
+            public void run() {
+                flush(EXIT_TIMEOUT);
+            }
+        });
+    }
+
+    /**
+     * Hides the default public constructor.
+     */
+    private SaveWriter() {
+        throw new IllegalStateException("Utility Class");
+    }
+
+    /**
+     * Saves a file on the background thread. If the file is saved again before this save is
+     * written, this save is replaced (and its listener is never called).
+     *
+     * @param path     the filepath to save to
+     * @param data     the new contents of the file
+     * @param listener told once the save is written or has failed (may be {@code null})
+     */
+    static void writeLater(final String path, byte[] data, SaveListener listener) {
+        synchronized (pending) {
+            //a save of this file is already waiting, so just replace its contents
+            if (pending.put(path, new Request(data, listener)) != null) return;
+        }
+        writer.execute(new Runnable() {
+            //@Override
+            public void run() {
+                Request request;
+                synchronized (pending) {
+                    request = pending.remove(path);
+                }
+                IOException error = null;
+                try {
+                    write(path, request.data);
+                } catch (IOException e) {
+                    error = e;
+                }
+                report(path, request.listener, error);
+            }
+        });
+    }
+
+    /**
+     * Tells a listener how a save went, on the Event Dispatch Thread.
+     *
+     * @param path     the filepath saved to
+     * @param listener the listener (may be {@code null})
+     * @param error    the error, or {@code null} if the save was written
+     */
+    private static void report(final String path, final SaveListener listener, final IOException error) {
+        if (listener == null) return;
+        SwingUtilities.invokeLater(new Runnable() {
+            //@Override
+            public void run() {
+                if (error == null) {
+                    listener.saved(path);
+                } else {
+                    listener.failed(path, error);
+                }
+            }
+        });
+    }
+
+    /**
+     * Waits for every save requested so far to be written.
+     *
+     * @param timeoutMillis the longest to wait, in milliseconds
+     * @return {@code true} if every save was written in time
+     */
+    static boolean flush(long timeoutMillis) {
+        //the writer runs one task at a time in order, so once this runs every earlier save is done
+        try {
+            writer.submit(new Runnable() {
+                //@Override
+                public void run() {
+                }
+            }).get(timeoutMillis, TimeUnit.MILLISECONDS);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            System.err.println("Save writer failed: " + e.getCause());
+        } catch (TimeoutException e) {
+            System.err.println("Timed out waiting for saves to be written.");
+        }
+        return false;
+    }
+
+    /**
+     * Saves a file on the calling thread (one file at a time): writes a temporary file,
+     * forces it to disk, then renames it over the old file.
+     *
+     * @param path the filepath to save to
+     * @param data the new contents of the file
+     * @throws IOException if the file couldn't be written (the old file is left as it was)
+     */
+    static synchronized void write(String path, byte[] data) throws IOException {
+        File target = new File(path);
+        File temp = new File(path + ".tmp");
+        FileOutputStream file = new FileOutputStream(temp);
+        try {
+            FileChannel channel = file.getChannel();
+            ByteBuffer buffer = ByteBuffer.wrap(data);
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            //make sure the contents are on disk before the rename makes them the save
+            channel.force(true);
+        } catch (IOException e) {
+            file.close();
+            temp.delete();
+            throw e;
+        }
+        file.close();
+
+        try {
+            Files.move(temp.toPath(), target.toPath(), StandardCopyOption.ATOMIC_MOVE,
+                    StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            //some file systems can't rename in one step, so replace as best they can
+            Files.move(temp.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * A save waiting to be written.
+     */
+    private static final class Request {
+        /**
+         * The new contents of the file.
+         */
+        private final byte[] data;
+
+        /**
+         * Told once the save is written or has failed (may be {@code null}).
+         */
+        private final SaveListener listener;
+
+        /**
+         * Instantiates a new request.
+         *
+         * @param data     the new contents of the file
+         * @param listener the listener (may be {@code null})
+         */
+        private Request(byte[] data, SaveListener listener) {
+            this.data = data;
+            this.listener = listener;
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package connectfour;
+
+/**
+ * Hears each improvement to a search's best move, as the search deepens, and tells the
+ * search when to give up. Called on the search's own threads, so it must return quickly.
+ *
+ * @author elliot gorman
+ */
+interface SearchListener {
+    /**
+     * Called once each depth of the search is complete.
+     *
+     * @param result the best move so far, and the depth searched to find it
+     */
+    void improved(SearchResult result);
+
+    /**
+     * Checked as the search runs, so a search nobody needs any more stops at once.
+     *
+     * @return {@code true} if the search should stop
+     */
+    boolean isCancelled();
+}
@@ -0,0 +1,169 @@
+package connectfour;
+
+/**
+ * The outcome of a search for the computer's move, along with how much work it took.
+ *
+ * @author elliot gorman
+ */
+final class SearchResult {
+    /**
+     * The chosen column.
+     */
+    private final int move;
+
+    /**
+     * The score of the chosen column, from the point of view of the player to move.
+     */
+    private final int score;
+
+    /**
+     * The deepest search depth that was fully completed.
+     */
+    private final int depth;
+
+    /**
+     * The number of positions visited.
+     */
+    private final long nodes;
+
+    /**
+     * The time taken, in nanoseconds.
+     */
+    private final long nanos;
+
+    /**
+     * The number of threads that searched.
+     */
+    private final int threads;
+
+    /**
+     * How many times more positions were visited by all threads than by the main thread
+     * (not a speedup: helpers which only repeat the main thread's work still add to it).
+     */
+    private final double nodeRatio;
+
+    /**
+     * What a node is for this kind of search ("nodes" for positions, "playouts" for random games).
+     */
+    private final String unit;
+
+    /**
+     * Instantiates a new search result.
+     *
+     * @param move  the chosen column
+     * @param score the score of the chosen column
+     * @param depth the deepest completed depth
+     * @param nodes the number of positions visited
+     * @param nanos the time taken, in nanoseconds
+     */
+    SearchResult(int move, int score, int depth, long nodes, long nanos) {
+        this(move, score, depth, nodes, nanos, 1, 1, "nodes");
+    }
+
+    /**
+     * Instantiates a new result of a search run on several threads.
+     *
+     * @param move      the chosen column
+     * @param score     the score of the chosen column
+     * @param depth     the deepest completed depth
+     * @param nodes     the number of positions visited by all threads
+     * @param nanos     the time taken, in nanoseconds
+     * @param threads   the number of threads
+     * @param nodeRatio the nodes visited by all threads divided by those of the main thread
+     * @param unit      what a node is ("nodes" for positions, "playouts" for random games)
+     */
+    SearchResult(int move, int score, int depth, long nodes, long nanos, int threads, double nodeRatio, String unit) {
+        this.move = move;
+        this.score = score;
+        this.depth = depth;
+        this.nodes = nodes;
+        this.nanos = nanos;
+        this.threads = threads;
+        this.nodeRatio = nodeRatio;
+        this.unit = unit;
+    }
+
+    /**
+     * Getter for the chosen column.
+     *
+     * @return the column
+     */
+    int getMove() {
+        return move;
+    }
+
+    /**
+     * Getter for the score of the chosen column.
+     *
+     * @return the score
+     */
+    int getScore() {
+        return score;
+    }
+
+    /**
+     * Getter for the deepest completed depth.
+     *
+     * @return the depth
+     */
+    int getDepth() {
+        return depth;
+    }
+
+    /**
+     * Getter for the number of positions visited.
+     *
+     * @return the node count
+     */
+    long getNodes() {
+        return nodes;
+    }
+
+    /**
+     * Getter for the time taken.
+     *
+     * @return the time in nanoseconds
+     */
+    long getNanos() {
+        return nanos;
+    }
+
+    /**
+     * Getter for the number of threads that searched.
+     *
+     * @return the thread count
+     */
+    int getThreads() {
+        return threads;
+    }
+
+    /**
+     * Getter for the node ratio.
+     *
+     * @return the nodes visited by all threads divided by those of the main thread
+     */
+    double getNodeRatio() {
+        return nodeRatio;
+    }
+
+    /**
+     * Calculates the search speed.
+     *
+     * @return the number of positions visited per second
+     */
+    long nodesPerSecond() {
+        return nanos == 0 ? 0 : nodes * 1000000000L / nanos;
+    }
+
+    /**
+     * Describes the result for printing to the console.
+     *
+     * @return the description
+     */
+    public String toString() {
+        return "COLUMN " + (move + 1) + " (score " + score + ", depth " + depth + ", "
+                + nodes + " " + unit + " in " + nanos / 1000000 + " ms, " + nodesPerSecond() + " " + unit + "/s"
+                + (threads > 1 ? ", " + threads + " threads, " + Math.round(nodeRatio * 10) / 10.0
+                + "x the main thread's " + unit + ")" : ")");
+    }
+}
@@ -1,9 +1,9 @@
 package connectfour;
 
+import java.io.ByteArrayOutputStream;
 import java.io.EOFException;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
@@ -24,40 +24,38 @@ class SerializeSystem {
 
     /**
      * Serializes the given object to the given path.
+     * The old file is only replaced once the new one is safely written.
      *
      * @param toSave the object to save
      * @param path   the filepath to save to
      */
-    static synchronized void serialize(Object toSave, String path) {
-        FileOutputStream fileOutputStream = null;
-        ObjectOutputStream objectOutputStream = null;
+    static void serialize(Object toSave, String path) {
         try {
-            //creates necessary output streams
-            fileOutputStream = new FileOutputStream(path); //to file
-            objectOutputStream = new ObjectOutputStream(fileOutputStream); //object
-
-            //writes object
-            objectOutputStream.writeObject(toSave);
+            SaveWriter.write(path, toBytes(toSave));
         } catch (FileNotFoundException nfe) {
             System.err.println("Necessary file not found.");
             java.awt.Toolkit.getDefaultToolkit().beep();
         } catch (IOException ioe) {
             System.err.println("Unexpected I/O Error. Keeping previous save.");
-        } finally {
-            //closes the streams in the finally
-            try {
-                if (objectOutputStream != null) {
-                    objectOutputStream.close();
-                }
-                if (fileOutputStream != null) {
-                    fileOutputStream.close();
-                }
-            } catch (IOException e) {
-                System.err.println("Unexpected I/O Error. Keeping previous save.");
-            }
         }
     }
 
+    /**
+     * Serializes the given object to bytes.
+     *
+     * @param toSave the object to save
+     * @return the serialized object
+     * @throws IOException if the object can't be serialized
+     */
+    private static byte[] toBytes(Object toSave) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ObjectOutputStream objectOutputStream = new ObjectOutputStream(bytes);
+        //writes object
+        objectOutputStream.writeObject(toSave);
+        objectOutputStream.close();
+        return bytes.toByteArray();
+    }
+
     /**
      * Loads the game from the given path.
      *
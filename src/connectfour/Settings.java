@@ -0,0 +1,339 @@
+package connectfour;
+
+import java.awt.Color;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import javax.swing.SwingUtilities;
+
+/**
+ * Every setting of the game, kept in one properties file.
+ * <p>
+ * Nothing is read when the program starts: the defaults are used straight away while the file
+ * is loaded on a background thread, and the loaded settings are handed over once they're ready.
+ * Changes are gathered up and written together a moment later, on the same thread, so the
+ * file is never written before it has been read.
+ *
+ * @author elliot gorman
+ */
+final class Settings {
+    /**
+     * The setting for player one's color.
+     */
+    static final String PLAYER_ONE_COLOR = "player.one.color";
+
+    /**
+     * The setting for player two's color.
+     */
+    static final String PLAYER_TWO_COLOR = "player.two.color";
+
+    /**
+     * The location of the settings file.
+     */
+    static final String DEFAULT_PATH = "connectfour/settings.properties";
+
+    /**
+     * The location of the first player's color, as saved by older versions.
+     */
+    static final String LEGACY_COLOR_ONE_PATH = "connectfour/p1.color";
+
+    /**
+     * The location of the second player's color, as saved by older versions.
+     */
+    static final String LEGACY_COLOR_TWO_PATH = "connectfour/p2.color";
+
+    /**
+     * How long changes are gathered before being written together, in milliseconds.
+     */
+    static final long WRITE_DELAY = 500;
+
+    /**
+     * How long to wait for changes to be written when the program exits, in milliseconds.
+     */
+    static final long EXIT_TIMEOUT = 2000;
+
+    /**
+     * The current settings (locked on itself).
+     */
+    private static final Properties values = new Properties();
+
+    /**
+     * The settings changed before the file was loaded, which the file mustn't overwrite.
+     */
+    private static final Set<String> changed = new HashSet<String>();
+
+    /**
+     * Whether the file has been loaded.
+     */
+    private static boolean loaded;
+
+    /**
+     * Whether a write of the changes is already scheduled.
+     */
+    private static boolean writeScheduled;
+
+    /**
+     * The thread the settings are read and written on.
+     */
+    private static final ScheduledExecutorService worker = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+        //@Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, "Settings");
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+
+    static {
+        //write the last changes before the program exits
+        Runtime.getRuntime().addShutdownHook(new Thread("Settings Shutdown") {
+            //@Override
+            public void run() {
+                flush(EXIT_TIMEOUT);
+            }
+        });
+    }
+
+    /**
+     * Hides the default public constructor.
+     */
+    private Settings() {
+        throw new IllegalStateException("Utility Class");
+    }
+
+    /**
+     * Loads the settings file on the background thread. Settings from older versions are
+     * imported if there is no settings file yet.
+     *
+     * @param listener run on the Event Dispatch Thread once the settings are loaded
+     */
+    static void load(final Runnable listener) {
+        worker.execute(new Runnable() {
+            //@Override
+            public void run() {
+                Properties file = read();
+                boolean write;
+                synchronized (values) {
+                    Iterator<String> keys = file.stringPropertyNames().iterator();
+                    while (keys.hasNext()) {
+                        String key = keys.next();
+                        //keep anything changed while the file was loading
+                        if (!changed.contains(key)) {
+                            values.setProperty(key, file.getProperty(key));
+                        }
+                    }
+                    loaded = true;
+                    write = writeScheduled;
+                }
+                //changes made before loading can be written now
+                if (write) {
+                    worker.schedule(new Runnable() {
+                        //@Override
+                        public void run() {
+                            write();
+                        }
+                    }, WRITE_DELAY, TimeUnit.MILLISECONDS);
+                }
+                SwingUtilities.invokeLater(listener);
+            }
+        });
+    }
+
+    /**
+     * Reads the settings file, or the settings saved by older versions.
+     *
+     * @return the settings read (empty if there are none)
+     */
+    private static Properties read() {
+        Properties file = new Properties();
+        if (new File(DEFAULT_PATH).exists()) {
+            InputStream in = null;
+            try {
+                in = new FileInputStream(DEFAULT_PATH);
+                file.load(in);
+            } catch (IOException e) {
+                System.err.println("Unexpected I/O Error loading the settings. Keeping defaults...");
+            } catch (IllegalArgumentException e) {
+                System.err.println("Couldn't properly parse the settings. Keeping defaults...");
+            } finally {
+                try {
+                    if (in != null) {
+                        in.close();
+                    }
+                } catch (IOException e) {
+                    System.err.println("Unexpected I/O Error loading the settings.");
+                }
+            }
+            return file;
+        }
+
+        //import the colors saved by older versions, then save them as settings
+        importColor(file, PLAYER_ONE_COLOR, LEGACY_COLOR_ONE_PATH, 1);
+        importColor(file, PLAYER_TWO_COLOR, LEGACY_COLOR_TWO_PATH, 2);
+        if (!file.isEmpty()) {
+            scheduleWrite();
+        }
+        return file;
+    }
+
+    /**
+     * Imports a color saved by older versions, if there is one.
+     *
+     * @param file  the settings to add the color to
+     * @param key   the setting
+     * @param path  the location of the old color file
+     * @param state which player's color (see {@link SerializeSystem#load(String, int)})
+     */
+    private static void importColor(Properties file, String key, String path, int state) {
+        if (!new File(path).exists()) return;
+        Object color = SerializeSystem.load(path, state);
+        if (color instanceof Color) {
+            file.setProperty(key, toString((Color) color));
+        }
+    }
+
+    /**
+     * Gets a setting.
+     *
+     * @param key          the setting
+     * @param defaultValue the value if the setting isn't set (or isn't loaded yet)
+     * @return the value
+     */
+    static String get(String key, String defaultValue) {
+        synchronized (values) {
+            return values.getProperty(key, defaultValue);
+        }
+    }
+
+    /**
+     * Changes a setting. The change is written a moment later, along with any others.
+     *
+     * @param key   the setting
+     * @param value the new value
+     */
+    static void set(String key, String value) {
+        synchronized (values) {
+            if (value.equals(values.getProperty(key))) return;
+            values.setProperty(key, value);
+            if (!loaded) {
+                changed.add(key);
+            }
+        }
+        scheduleWrite();
+    }
+
+    /**
+     * Gets a color setting.
+     *
+     * @param key          the setting
+     * @param defaultValue the color if the setting isn't set or isn't a color
+     * @return the color
+     */
+    static Color getColor(String key, Color defaultValue) {
+        String value = get(key, null);
+        if (value == null) return defaultValue;
+        try {
+            return new Color((int) Long.parseLong(value, 16), true);
+        } catch (NumberFormatException e) {
+            System.err.println("Couldn't properly parse the setting " + key + ". Keeping defaults...");
+            return defaultValue;
+        }
+    }
+
+    /**
+     * Changes a color setting.
+     *
+     * @param key   the setting
+     * @param color the new color
+     */
+    static void setColor(String key, Color color) {
+        set(key, toString(color));
+    }
+
+    /**
+     * Converts a color to how it is stored.
+     *
+     * @param color the color
+     * @return the color as hexadecimal "AARRGGBB"
+     */
+    private static String toString(Color color) {
+        String hex = Long.toHexString(color.getRGB() & 0xFFFFFFFFL).toUpperCase();
+        return "00000000".substring(hex.length()) + hex;
+    }
+
+    /**
+     * Schedules a write of the settings, unless one is already scheduled.
+     */
+    private static void scheduleWrite() {
+        synchronized (values) {
+            if (writeScheduled) return;
+            writeScheduled = true;
+        }
+        worker.schedule(new Runnable() {
+            //@Override
+            public void run() {
+                write();
+            }
+        }, WRITE_DELAY, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Writes the settings file, if anything has changed. Runs on the background thread.
+     */
+    private static void write() {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        synchronized (values) {
+            //never write over the file before it has been read
+            if (!writeScheduled || !loaded) return;
+            writeScheduled = false;
+            try {
+                values.store(bytes, "Connect Four settings");
+            } catch (IOException e) {
+                //a byte array never fails to write
+                throw new IllegalStateException(e);
+            }
+        }
+        try {
+            SaveWriter.write(DEFAULT_PATH, bytes.toByteArray());
+        } catch (IOException e) {
+            System.err.println("Unexpected I/O Error saving the settings. Keeping previous settings.");
+        }
+    }
+
+    /**
+     * Writes any changes straight away and waits for them to be written.
+     *
+     * @param timeoutMillis the longest to wait, in milliseconds
+     * @return {@code true} if the changes were written in time
+     */
+    static boolean flush(long timeoutMillis) {
+        try {
+            worker.submit(new Runnable() {
+                //@Override
+                public void run() {
+                    write();
+                }
+            }).get(timeoutMillis, TimeUnit.MILLISECONDS);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            System.err.println("Settings writer failed: " + e.getCause());
+        } catch (TimeoutException e) {
+            System.err.println("Timed out waiting for the settings to be written.");
+        }
+        return false;
+    }
+}
@@ -0,0 +1,492 @@
+package connectfour;
+
+import java.util.Random;
+
+/**
+ * Solves positions exactly: finds whether the player to move wins, loses or draws with perfect
+ * play, and how quickly. Uses null-window searches narrowing in on the score, prunes every move
+ * that hands the opponent a win, and keeps upper bounds in a transposition table.
+ * <p>
+ * A score of 0 is a draw, a positive score is a win for the player to move and a negative one
+ * a loss. The sooner the game is won the larger the score: winning with your last piece scores 1,
+ * winning with one piece to spare scores 2 and so on.
+ * <p>
+ * Usage (from the src folder):
+ * <ul>
+ * <li>{@code java connectfour.Solver 4453} solves the position after those moves (columns 1 to 7)</li>
+ * <li>{@code java connectfour.Solver load} solves the saved game</li>
+ * <li>{@code java connectfour.Solver bench [positions]} times solving generated positions</li>
+ * <li>{@code java connectfour.Solver verify [positions]} checks the solver against plain minimax</li>
+ * </ul>
+ *
+ * @author elliot gorman
+ */
+final class Solver {
+    /**
+     * The lowest possible score.
+     */
+    static final int MIN_SCORE = -BitBoard.CELLS / 2 + 3;
+
+    /**
+     * The highest possible score.
+     */
+    static final int MAX_SCORE = (BitBoard.CELLS + 1) / 2 - 3;
+
+    /**
+     * The default memory for the transposition table, in megabytes.
+     */
+    static final int DEFAULT_TABLE_MEGABYTES = 256;
+
+    /**
+     * The upper bounds found so far.
+     */
+    private final TranspositionTable table;
+
+    /**
+     * The player to move's pieces.
+     */
+    private long current;
+
+    /**
+     * Every occupied cell.
+     */
+    private long mask;
+
+    /**
+     * The number of moves played.
+     */
+    private int moves;
+
+    /**
+     * The number of positions visited.
+     */
+    private long nodes;
+
+    /**
+     * The candidate moves of each ply, reused so the search allocates nothing.
+     */
+    private final long[][] sortedMoves = new long[BitBoard.CELLS + 1][GameData.COLUMNS];
+
+    /**
+     * The ordering scores of the candidate moves of each ply.
+     */
+    private final int[][] sortedScores = new int[BitBoard.CELLS + 1][GameData.COLUMNS];
+
+    /**
+     * Instantiates a new solver.
+     *
+     * @param megabytes the memory for the transposition table
+     */
+    Solver(int megabytes) {
+        table = new TranspositionTable(megabytes);
+    }
+
+    /**
+     * Solves a position.
+     *
+     * @param board  the position (not changed)
+     * @param player the player to move
+     * @return the exact score for the player to move
+     */
+    int solve(BitBoard board, int player) {
+        current = board.getPieces(player);
+        mask = board.getMask();
+        moves = board.getMoves();
+        nodes = 0;
+        table.newSearch();
+
+        if (canWinNext()) {
+            return (BitBoard.CELLS + 1 - moves) / 2;
+        }
+        int min = -(BitBoard.CELLS - moves) / 2;
+        int max = (BitBoard.CELLS + 1 - moves) / 2;
+        //narrow in on the score with null-window searches
+        while (min < max) {
+            int med = min + (max - min) / 2;
+            if (med <= 0 && min / 2 < med) {
+                med = min / 2;
+            } else if (med >= 0 && max / 2 > med) {
+                med = max / 2;
+            }
+            int r = negamax(med, med + 1);
+            if (r <= med) {
+                max = r;
+            } else {
+                min = r;
+            }
+        }
+        return min;
+    }
+
+    /**
+     * The negamax search with alpha-beta pruning, for positions where the player to move
+     * can't win straight away.
+     *
+     * @param alpha the score the player to move is already guaranteed
+     * @param beta  the score the opponent is already guaranteed (negated)
+     * @return the score, or a bound on it if outside the window
+     */
+    private int negamax(int alpha, int beta) {
+        nodes++;
+        long next = possibleNonLosingMoves();
+        //every move loses
+        if (next == 0) {
+            return -(BitBoard.CELLS - moves) / 2;
+        }
+        //the opponent can't win with their last piece either
+        if (moves >= BitBoard.CELLS - 2) {
+            return 0;
+        }
+
+        //the opponent can't win before their next move
+        int min = -(BitBoard.CELLS - 2 - moves) / 2;
+        if (alpha < min) {
+            alpha = min;
+            if (alpha >= beta) return alpha;
+        }
+        //the player to move can't win with this move
+        int max = (BitBoard.CELLS - 1 - moves) / 2;
+        long key = current + mask;
+        long entry = table.probe(key);
+        if (entry != 0) {
+            max = TranspositionTable.score(entry);
+        }
+        if (beta > max) {
+            beta = max;
+            if (alpha >= beta) return beta;
+        }
+
+        //order the moves by how many winning cells they make, center first on ties
+        long[] candidates = sortedMoves[moves];
+        int[] scores = sortedScores[moves];
+        int count = 0;
+        for (int i = GameData.COLUMNS - 1; i >= 0; i--) {
+            long move = next & columnMask(NegamaxSearch.COLUMN_ORDER[i]);
+            if (move == 0) continue;
+            int score = Long.bitCount(BitBoard.winningCells(current | move, mask));
+            int j = count++;
+            while (j > 0 && scores[j - 1] > score) {
+                candidates[j] = candidates[j - 1];
+                scores[j] = scores[j - 1];
+                j--;
+            }
+            candidates[j] = move;
+            scores[j] = score;
+        }
+
+        for (int i = count - 1; i >= 0; i--) {
+            long move = candidates[i];
+            //play the move, the opponent then moves
+            long previous = current;
+            current ^= mask;
+            mask |= move;
+            moves++;
+            int score = -negamax(-beta, -alpha);
+            moves--;
+            mask ^= move;
+            current = previous;
+
+            if (score >= beta) return score;
+            if (score > alpha) alpha = score;
+        }
+
+        table.store(key, -1, alpha, 0, TranspositionTable.UPPER);
+        return alpha;
+    }
+
+    /**
+     * Finds the cells that can be played now.
+     *
+     * @return a bitboard of the lowest empty cell of every column
+     */
+    private long possible() {
+        return (mask + BitBoard.BOTTOM_MASK) & BitBoard.BOARD_MASK;
+    }
+
+    /**
+     * Checks if the player to move can win straight away.
+     *
+     * @return {@code true} if a winning move exists
+     */
+    private boolean canWinNext() {
+        return (BitBoard.winningCells(current, mask) & possible()) != 0;
+    }
+
+    /**
+     * Finds the moves that don't let the opponent win straight away.
+     * If the opponent threatens two wins, every move loses.
+     *
+     * @return a bitboard of the cells that can safely be played
+     */
+    private long possibleNonLosingMoves() {
+        long possible = possible();
+        long opponentWins = BitBoard.winningCells(current ^ mask, mask);
+        long forced = possible & opponentWins;
+        if (forced != 0) {
+            //two threats can't both be blocked
+            if ((forced & (forced - 1)) != 0) return 0;
+            possible = forced;
+        }
+        //don't play underneath the opponent's winning cell
+        return possible & ~(opponentWins >>> 1);
+    }
+
+    /**
+     * Builds the mask of a whole column.
+     *
+     * @param col the column
+     * @return the column's cells
+     */
+    private static long columnMask(int col) {
+        return ((1L << GameData.ROWS) - 1) << (col * BitBoard.COLUMN_BITS);
+    }
+
+    /**
+     * Getter for the number of positions visited by the last solve.
+     *
+     * @return the node count
+     */
+    long getNodes() {
+        return nodes;
+    }
+
+    /**
+     * Getter for the transposition table.
+     *
+     * @return the table
+     */
+    TranspositionTable getTable() {
+        return table;
+    }
+
+    /**
+     * Works out how many moves (of both players, including the last) the game lasts with perfect play.
+     *
+     * @param score the score of the position
+     * @param moves the number of moves already played
+     * @return the moves until the game is won or lost, or until the board is full for a draw
+     */
+    static int distance(int score, int moves) {
+        if (score == 0) return BitBoard.CELLS - moves;
+        int s = Math.abs(score);
+        //the number of moves before the winning piece, whose parity says who plays it
+        int winningMove = BitBoard.CELLS + 1 - 2 * s;
+        if ((winningMove % 2 == moves % 2) != (score > 0)) {
+            winningMove--;
+        }
+        return winningMove - moves + 1;
+    }
+
+    /**
+     * Describes a score for printing to the console.
+     *
+     * @param score the score
+     * @param moves the number of moves already played
+     * @return the description
+     */
+    static String describe(int score, int moves) {
+        if (score == 0) return "DRAW";
+        return (score > 0 ? "PLAYER TO MOVE WINS" : "PLAYER TO MOVE LOSES")
+                + " IN " + distance(score, moves) + " MOVES";
+    }
+
+    /**
+     * Plays a move string (columns 1 to 7, e.g. "4453") from the empty board.
+     *
+     * @param sequence the moves
+     * @return the position, or {@code null} if the sequence is invalid or the game is already over
+     */
+    static BitBoard parse(String sequence) {
+        BitBoard board = new BitBoard();
+        for (int i = 0; i < sequence.length(); i++) {
+            int col = sequence.charAt(i) - '1';
+            int player = i % 2 + 1;
+            if (col < 0 || col >= GameData.COLUMNS || !board.canPlay(col) || board.isWinningMove(col, player)) {
+                return null;
+            }
+            board.play(col, player);
+        }
+        return board;
+    }
+
+    /**
+     * Solves a move string, the saved game, runs the benchmark or checks the solver.
+     *
+     * @param args the move string, "load", or "bench" or "verify" followed by the number of positions
+     */
+    public static void main(String[] args) {
+        if (args.length == 0) {
+            System.err.println("Usage: Solver <moves> | load | bench [positions] | verify [positions]");
+            return;
+        }
+        Solver solver = new Solver(DEFAULT_TABLE_MEGABYTES);
+        if (args[0].equals("bench")) {
+            benchmark(solver, args.length > 1 ? Integer.parseInt(args[1]) : 20);
+            return;
+        }
+        if (args[0].equals("verify")) {
+            if (!verify(solver, args.length > 1 ? Integer.parseInt(args[1]) : 200)) {
+                System.exit(1);
+            }
+            return;
+        }
+
+        BitBoard board;
+        if (args[0].equals("load")) {
+            GameSave save = GameSave.load(CirclePanel.DEFAULT_PLAYER_ONE_COLOR, CirclePanel.DEFAULT_PLAYER_TWO_COLOR);
+            GameEngine game = new GameEngine();
+            if (save == null || !save.restore(game)) {
+                System.err.println("Game load failed...");
+                return;
+            }
+            board = game.copyBoard();
+            if (game.getWinner() != 0) {
+                System.err.println("The saved game is already over.");
+                return;
+            }
+        } else {
+            board = parse(args[0]);
+            if (board == null) {
+                System.err.println("Invalid move string: " + args[0]);
+                return;
+            }
+        }
+
+        int player = OpeningBookBuilder.playerToMove(board);
+        long start = System.nanoTime();
+        int score = solver.solve(board, player);
+        long nanos = System.nanoTime() - start;
+        System.out.println("SCORE " + score + ": " + describe(score, board.getMoves()) + " ("
+                + solver.getNodes() + " nodes in " + nanos / 1000000 + " ms)");
+    }
+
+    /**
+     * Times solving randomly generated beginning, middle and end positions.
+     *
+     * @param solver the solver
+     * @param count  the number of positions in each set
+     */
+    private static void benchmark(Solver solver, int count) {
+        String[] names = {"END", "MIDDLE", "BEGIN"};
+        int[] plies = {28, 18, 12};
+        //a fixed seed, so every run solves the same positions
+        Random random = new Random(4);
+        for (int set = 0; set < names.length; set++) {
+            long totalNanos = 0;
+            long totalNodes = 0;
+            for (int i = 0; i < count; i++) {
+                BitBoard board = randomPosition(random, plies[set]);
+                solver.getTable().clear();
+                long start = System.nanoTime();
+                solver.solve(board, OpeningBookBuilder.playerToMove(board));
+                totalNanos += System.nanoTime() - start;
+                totalNodes += solver.getNodes();
+            }
+            System.out.println(names[set] + " (" + plies[set] + " moves played, " + count + " positions): mean "
+                    + totalNanos / count / 1000 + " us, " + totalNodes / count + " nodes, "
+                    + (totalNanos == 0 ? 0 : totalNodes * 1000000000L / totalNanos) + " nodes/s");
+        }
+    }
+
+    /**
+     * Checks the solver against plain minimax, with no pruning and no table, on generated positions
+     * near the end of the game, where every line can be played out.
+     *
+     * @param solver the solver
+     * @param count  the number of positions in each set
+     * @return whether every score matched
+     */
+    private static boolean verify(Solver solver, int count) {
+        int[] plies = {34, 32, 30};
+        //a fixed seed, so every run checks the same positions
+        Random random = new Random(8);
+        int mismatches = 0;
+        for (int set = 0; set < plies.length; set++) {
+            for (int i = 0; i < count; i++) {
+                BitBoard board = randomPosition(random, plies[set]);
+                int player = OpeningBookBuilder.playerToMove(board);
+                //a shared table must give the same scores as a fresh one
+                if (i % 2 == 0) {
+                    solver.getTable().clear();
+                }
+                int expected = minimax(board, player);
+                int score = solver.solve(board, player);
+                if (score != expected) {
+                    mismatches++;
+                    System.err.println("Solver scored " + score + ", minimax " + expected + ": " + toRows(board));
+                }
+            }
+        }
+        System.out.println("VERIFIED " + count * plies.length + " POSITIONS, " + mismatches + " MISMATCHES");
+        return mismatches == 0;
+    }
+
+    /**
+     * Scores a position by trying every line to the end of the game.
+     *
+     * @param board  the position (played on and restored)
+     * @param player the player to move
+     * @return the exact score for the player to move
+     */
+    private static int minimax(BitBoard board, int player) {
+        if (board.isFull()) return 0;
+        int best = MIN_SCORE - 1;
+        for (int col = 0; col < GameData.COLUMNS; col++) {
+            if (!board.canPlay(col)) continue;
+            int score;
+            if (board.isWinningMove(col, player)) {
+                score = (BitBoard.CELLS + 1 - board.getMoves()) / 2;
+            } else {
+                board.play(col, player);
+                score = -minimax(board, 3 - player);
+                board.undo(col);
+            }
+            best = Math.max(best, score);
+        }
+        return best;
+    }
+
+    /**
+     * Writes a position as its rows, top first, for reporting.
+     *
+     * @param board the position
+     * @return the rows separated by '/', with '.' for an empty cell and 1 or 2 for a piece
+     */
+    private static String toRows(BitBoard board) {
+        StringBuffer rows = new StringBuffer();
+        for (int y = 0; y < GameData.ROWS; y++) {
+            if (y > 0) rows.append('/');
+            for (int x = 0; x < GameData.COLUMNS; x++) {
+                int piece = board.get(y, x);
+                rows.append(piece == 0 ? '.' : (char) ('0' + piece));
+            }
+        }
+        return rows.toString();
+    }
+
+    /**
+     * Plays random moves until a position is reached that isn't over and can't be won straight away.
+     *
+     * @param random the random number generator
+     * @param plies  the number of moves to play
+     * @return the position
+     */
+    private static BitBoard randomPosition(Random random, int plies) {
+        while (true) {
+            BitBoard board = new BitBoard();
+            boolean valid = true;
+            while (valid && board.getMoves() < plies) {
+                int col = random.nextInt(GameData.COLUMNS);
+                int player = OpeningBookBuilder.playerToMove(board);
+                if (!board.canPlay(col)) continue;
+                valid = !board.isWinningMove(col, player);
+                board.play(col, player);
+            }
+            int player = OpeningBookBuilder.playerToMove(board);
+            for (int col = 0; valid && col < GameData.COLUMNS; col++) {
+                valid = !board.canPlay(col) || !board.isWinningMove(col, player);
+            }
+            if (valid) return board;
+        }
+    }
+}
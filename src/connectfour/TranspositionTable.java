@@ -0,0 +1,286 @@
+package connectfour;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A fixed-size table of search results, keyed by position, that any number of search
+ * threads can share without locking. A position and its mirror image share an entry.
+ * Each entry takes two longs: the packed data, and the key xor'ed with that data. An entry
+ * torn by two threads writing at once no longer matches its key, so it simply reads as a miss.
+ * Deeper results are kept in preference to shallower ones from the same search.
+ *
+ * @author elliot gorman
+ */
+final class TranspositionTable {
+    /**
+     * The score is exact.
+     */
+    static final int EXACT = 1;
+
+    /**
+     * The score is a lower bound (the search failed high).
+     */
+    static final int LOWER = 2;
+
+    /**
+     * The score is an upper bound (the search failed low).
+     */
+    static final int UPPER = 3;
+
+    /**
+     * The number of bytes each entry takes.
+     */
+    static final int ENTRY_BYTES = 16;
+
+    /**
+     * The entries (key ^ data followed by data).
+     */
+    private final long[] table;
+
+    /**
+     * The mask which turns a hash into an entry index.
+     */
+    private final int indexMask;
+
+    /**
+     * The current search generation, older entries are always replaced.
+     */
+    private volatile int generation;
+
+    /**
+     * The number of probes that found their position.
+     */
+    private final LongAdder hits = new LongAdder();
+
+    /**
+     * The number of probes that found nothing.
+     */
+    private final LongAdder misses = new LongAdder();
+
+    /**
+     * The number of probes that found a different position in the slot.
+     */
+    private final LongAdder collisions = new LongAdder();
+
+    /**
+     * Instantiates a new table.
+     *
+     * @param megabytes the memory to use, rounded down to a power of two number of entries
+     */
+    TranspositionTable(int megabytes) {
+        long entries = Long.highestOneBit(Math.max(1, (long) megabytes * 1024 * 1024 / ENTRY_BYTES));
+        //two longs per entry, and array indices must fit in an int
+        entries = Math.min(entries, 1L << 29);
+        table = new long[(int) entries * 2];
+        indexMask = (int) entries - 1;
+    }
+
+    /**
+     * Computes the key of a position, which its mirror image shares (see {@link BitBoard#getCanonicalKey()}),
+     * so either of them finds the other's entry. Columns stored under the key are the mirror image's
+     * if {@link BitBoard#isMirrored()}.
+     *
+     * @param board  the board
+     * @param player the player to move
+     * @return the key
+     */
+    static long key(BitBoard board, int player) {
+        return player == 2 ? board.getCanonicalKey() ^ BitBoard.SIDE_TO_MOVE : board.getCanonicalKey();
+    }
+
+    /**
+     * Finds the entry index of a key.
+     *
+     * @param key the key
+     * @return the index of the first long of the entry
+     */
+    private int index(long key) {
+        //mixes the bits so that similar positions spread over the table
+        long h = key * 0x9E3779B97F4A7C15L;
+        return ((int) (h >>> 32) & indexMask) << 1;
+    }
+
+    /**
+     * Looks up a position.
+     *
+     * @param key the key
+     * @return the packed entry data, or 0 if the position isn't stored
+     */
+    long probe(long key) {
+        int i = index(key);
+        long data = table[i + 1];
+        long check = table[i];
+        if (data == 0) {
+            misses.increment();
+            return 0;
+        }
+        if ((check ^ data) != key) {
+            collisions.increment();
+            return 0;
+        }
+        hits.increment();
+        return data;
+    }
+
+    /**
+     * Stores a search result, unless a deeper result from this search is already in its slot.
+     *
+     * @param key   the key
+     * @param move  the best column (or -1 if none)
+     * @param score the score
+     * @param depth the depth searched
+     * @param flag  {@link #EXACT}, {@link #LOWER} or {@link #UPPER}
+     */
+    void store(long key, int move, int score, int depth, int flag) {
+        int i = index(key);
+        long old = table[i + 1];
+        if (old != 0 && (table[i] ^ old) != key && generation(old) == generation && depth(old) > depth) {
+            return;
+        }
+        long data = pack(move, score, depth, flag, generation);
+        table[i + 1] = data;
+        table[i] = key ^ data;
+    }
+
+    /**
+     * Starts a new search, so that entries from earlier searches are replaced first.
+     */
+    void newSearch() {
+        generation = (generation + 1) & 0xFF;
+    }
+
+    /**
+     * Empties the table and its counters.
+     */
+    void clear() {
+        Arrays.fill(table, 0);
+        hits.reset();
+        misses.reset();
+        collisions.reset();
+    }
+
+    /**
+     * Packs an entry into a long. The flag is never 0, so neither is a packed entry.
+     *
+     * @param move       the best column (or -1 if none)
+     * @param score      the score
+     * @param depth      the depth searched
+     * @param flag       the bound type
+     * @param generation the search generation
+     * @return the packed entry
+     */
+    private static long pack(int move, int score, int depth, int flag, int generation) {
+        return (long) (score & 0xFFFF)
+                | (long) ((move + 1) & 0xFF) << 16
+                | (long) (depth & 0xFF) << 24
+                | (long) (flag & 0x3) << 32
+                | (long) (generation & 0xFF) << 40;
+    }
+
+    /**
+     * Unpacks the score of an entry.
+     *
+     * @param data the packed entry
+     * @return the score
+     */
+    static int score(long data) {
+        return (short) data;
+    }
+
+    /**
+     * Unpacks the best column of an entry.
+     *
+     * @param data the packed entry
+     * @return the column, or -1 if none
+     */
+    static int move(long data) {
+        return (int) (data >>> 16 & 0xFF) - 1;
+    }
+
+    /**
+     * Unpacks the depth of an entry.
+     *
+     * @param data the packed entry
+     * @return the depth
+     */
+    static int depth(long data) {
+        return (int) (data >>> 24 & 0xFF);
+    }
+
+    /**
+     * Unpacks the bound type of an entry.
+     *
+     * @param data the packed entry
+     * @return {@link #EXACT}, {@link #LOWER} or {@link #UPPER}
+     */
+    static int flag(long data) {
+        return (int) (data >>> 32 & 0x3);
+    }
+
+    /**
+     * Unpacks the search generation of an entry.
+     *
+     * @param data the packed entry
+     * @return the generation
+     */
+    private static int generation(long data) {
+        return (int) (data >>> 40 & 0xFF);
+    }
+
+    /**
+     * Getter for the number of entries.
+     *
+     * @return the capacity
+     */
+    int getCapacity() {
+        return indexMask + 1;
+    }
+
+    /**
+     * Getter for the memory used.
+     *
+     * @return the size in megabytes
+     */
+    long getMegabytes() {
+        return (long) getCapacity() * ENTRY_BYTES / (1024 * 1024);
+    }
+
+    /**
+     * Getter for the number of probes that found their position.
+     *
+     * @return the hit count
+     */
+    long getHits() {
+        return hits.sum();
+    }
+
+    /**
+     * Getter for the number of probes that found nothing.
+     *
+     * @return the miss count
+     */
+    long getMisses() {
+        return misses.sum();
+    }
+
+    /**
+     * Getter for the number of probes that found another position in the slot.
+     *
+     * @return the collision count
+     */
+    long getCollisions() {
+        return collisions.sum();
+    }
+
+    /**
+     * Describes the table's size and counters for printing to the console.
+     *
+     * @return the description
+     */
+    public String toString() {
+        long probes = getHits() + getMisses() + getCollisions();
+        return getMegabytes() + " MB table: " + getHits() + " hits, " + getMisses() + " misses, "
+                + getCollisions() + " collisions (" + (probes == 0 ? 0 : getHits() * 100 / probes) + "% hit rate)";
+    }
+}